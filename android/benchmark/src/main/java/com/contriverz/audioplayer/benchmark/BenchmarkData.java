@@ -0,0 +1,47 @@
+package com.contriverz.audioplayer.benchmark;
+
+import com.contriverz.audioplayer.AudioTrack;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic libraries shaped like real ones: few artists and albums, many tracks.
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {}
+
+    static JSONArray trackJson(int count) {
+        JSONArray array = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            JSONObject json = new JSONObject();
+            json.put("id", "track-" + i);
+            json.put("title", "Track number " + i);
+            json.put("artist", "Artist " + (i % 200));
+            json.put("album", "Album " + (i % 2000));
+            json.put("duration", 180.0 + (i % 120));
+            json.put("url", "https://cdn.example.com/audio/" + i + ".mp3");
+            json.put("artwork", "https://cdn.example.com/art/" + (i % 2000) + ".jpg");
+            array.put(json);
+        }
+        return array;
+    }
+
+    static List<AudioTrack> tracks(int count) {
+        List<AudioTrack> tracks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tracks.add(track(i));
+        }
+        return tracks;
+    }
+
+    static AudioTrack track(int i) {
+        return new AudioTrack("track-" + i, "Track number " + i, "Artist " + (i % 200), "Album " + (i % 2000),
+                180.0 + (i % 120), "https://cdn.example.com/audio/" + i + ".mp3",
+                "https://cdn.example.com/art/" + (i % 2000) + ".jpg");
+    }
+}
@@ -0,0 +1,53 @@
+package com.contriverz.audioplayer.benchmark;
+
+import com.contriverz.audioplayer.NotificationState;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Notification text work per update. The change check is what every tick pays
+ * now, the formatted position text is what every tick used to pay.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotificationBenchmark {
+
+    private final Object artwork = new Object();
+    private final NotificationState state = new NotificationState();
+    private long positionMs;
+
+    @Setup
+    public void setUp() {
+        state.set("Track number 42", "Artist 42", true, artwork);
+    }
+
+    @Benchmark
+    public boolean unchangedCheck() {
+        return state.differs("Track number 42", "Artist 42", true, artwork);
+    }
+
+    @Benchmark
+    public String legacyPositionText() {
+        positionMs += 3000;
+        int positionSec = (int) (positionMs / 1000);
+        int durationSec = 215;
+        String positionText = String.format("%02d:%02d", positionSec / 60, positionSec % 60);
+        String durationText = String.format("%02d:%02d", durationSec / 60, durationSec % 60);
+        return "Artist 42" + " • " + positionText + "/" + durationText;
+    }
+}
@@ -0,0 +1,51 @@
+package com.contriverz.audioplayer.benchmark;
+
+import com.contriverz.audioplayer.PlayerStatePayload;
+import com.getcapacitor.JSObject;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the playerStateChange and positionAnchor payloads, paid on every event.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadBenchmark {
+
+    private long position;
+
+    @Benchmark
+    public JSObject playerState() {
+        position += 500;
+        return PlayerStatePayload.playerState("track-42", true, position, 215_000);
+    }
+
+    @Benchmark
+    public JSObject anchor() {
+        position += 500;
+        return PlayerStatePayload.anchor("track-42", true, position, 215_000, 1.0f, position, "heartbeat");
+    }
+
+    /**
+     * What the bridge does with each payload before handing it to the WebView.
+     */
+    @Benchmark
+    public String playerStateSerialized() {
+        position += 500;
+        return PlayerStatePayload.playerState("track-42", true, position, 215_000).toString();
+    }
+}
@@ -0,0 +1,83 @@
+package com.contriverz.audioplayer.benchmark;
+
+import com.contriverz.audioplayer.AudioTrack;
+import com.contriverz.audioplayer.FakePlayerBackend;
+import com.contriverz.audioplayer.PlaybackEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Engine transitions against FakePlayerBackend, with no player cost in the way.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlaybackEngineBenchmark {
+
+    @Param({"1000", "50000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean shuffle;
+
+    private List<AudioTrack> tracks;
+    private FakePlayerBackend backend;
+    private PlaybackEngine engine;
+
+    @Setup
+    public void setUp() {
+        tracks = BenchmarkData.tracks(size);
+        backend = new FakePlayerBackend();
+        engine = new PlaybackEngine(backend, 42);
+        engine.setRepeatMode(PlaybackEngine.REPEAT_ALL);
+        engine.setQueue(tracks, 0);
+        engine.setShuffle(shuffle);
+        engine.play();
+    }
+
+    /**
+     * User skip, a full load of the next track.
+     */
+    @Benchmark
+    public int skipNext() {
+        engine.next();
+        return engine.getCurrentIndex();
+    }
+
+    /**
+     * Track end, the backend hands over to the queued track and the engine queues the one after.
+     */
+    @Benchmark
+    public int autoAdvance() {
+        backend.seekTo(backend.getDurationMs() - 1);
+        backend.advance(1);
+        return engine.getCurrentIndex();
+    }
+
+    @Benchmark
+    public boolean toggleShuffle() {
+        engine.setShuffle(!engine.isShuffle());
+        return engine.isShuffle();
+    }
+
+    @Benchmark
+    public List<AudioTrack> upcoming() {
+        return engine.upcoming(2);
+    }
+}
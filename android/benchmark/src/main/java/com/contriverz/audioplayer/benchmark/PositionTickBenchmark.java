@@ -0,0 +1,51 @@
+package com.contriverz.audioplayer.benchmark;
+
+import com.contriverz.audioplayer.PlayerStatePayload;
+import com.contriverz.audioplayer.PositionAnchorTracker;
+import com.getcapacitor.JSObject;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Work done per position tick in interval mode versus anchor mode.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PositionTickBenchmark {
+
+    private final PositionAnchorTracker tracker = new PositionAnchorTracker();
+    private long nowMs;
+
+    @Benchmark
+    public JSObject intervalTick() {
+        nowMs += 500;
+        return PlayerStatePayload.playerState("track-42", true, nowMs, 215_000);
+    }
+
+    /**
+     * Advances 500 ms per tick, so an anchor is only built on the heartbeat.
+     */
+    @Benchmark
+    public JSObject anchorTick() {
+        nowMs += 500;
+        String reason = tracker.anchorDue(nowMs, nowMs, true, 1.0f);
+        if (reason == null) return null;
+
+        tracker.markAnchor(nowMs, nowMs, true, 1.0f);
+        return PlayerStatePayload.anchor("track-42", true, nowMs, 215_000, 1.0f, nowMs, reason);
+    }
+}
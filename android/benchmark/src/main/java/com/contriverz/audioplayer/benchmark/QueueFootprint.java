@@ -0,0 +1,56 @@
+package com.contriverz.audioplayer.benchmark;
+
+import com.contriverz.audioplayer.TrackParser;
+import com.contriverz.audioplayer.TrackQueue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Reports retained heap per 10k queued tracks, plain and compact storage side by side.
+ * Not a JMH benchmark, retained size is a heap measurement rather than a timing.
+ *
+ * ./gradlew -p benchmark footprint [-Pfootprint.tracks=50000]
+ */
+public final class QueueFootprint {
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    private QueueFootprint() {}
+
+    public static void main(String[] args) throws Exception {
+        int tracks = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+
+        // Warm up class loading and the parser before measuring
+        measure(tracks, Integer.MAX_VALUE);
+        measure(tracks, 0);
+
+        long plain = measure(tracks, Integer.MAX_VALUE);
+        long compact = measure(tracks, 0);
+
+        System.out.printf("Queue of %,d tracks%n", tracks);
+        System.out.printf("  plain:   %,12d bytes  %,10d per 10k  %,6d per track%n", plain, plain * 10_000 / tracks, plain / tracks);
+        System.out.printf("  compact: %,12d bytes  %,10d per 10k  %,6d per track%n", compact, compact * 10_000 / tracks, compact / tracks);
+        System.out.printf("  saved:   %.1f%%%n", 100.0 * (plain - compact) / plain);
+    }
+
+    private static long measure(int tracks, int compactThreshold) throws Exception {
+        long before = usedAfterGc();
+        TrackQueue queue = new TrackQueue();
+        queue.setCompactThreshold(compactThreshold);
+        // Parsed from JSON like setQueue does, so every track starts with its own String copies.
+        // The JSON is unreachable by the second reading, only what the queue keeps is counted.
+        queue.addAll(TrackParser.parseAll(BenchmarkData.trackJson(tracks)));
+        long after = usedAfterGc();
+        if (queue.size() != tracks) throw new IllegalStateException("Parsed " + queue.size());
+        return after - before;
+    }
+
+    private static long usedAfterGc() throws InterruptedException {
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,57 @@
+package com.contriverz.audioplayer.benchmark;
+
+import com.contriverz.audioplayer.AudioTrack;
+import com.contriverz.audioplayer.TrackParser;
+
+import org.json.JSONArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a setQueue/addTracks payload into AudioTracks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrackParserBenchmark {
+
+    @Param({"1000", "30000"})
+    public int size;
+
+    private JSONArray array;
+    private String json;
+
+    @Setup
+    public void setUp() {
+        array = BenchmarkData.trackJson(size);
+        json = array.toString();
+    }
+
+    @Benchmark
+    public List<AudioTrack> parseAll() {
+        return TrackParser.parseAll(array);
+    }
+
+    /**
+     * Includes building the JSON tree, which is what the bridge does before the plugin sees it.
+     */
+    @Benchmark
+    public List<AudioTrack> parseFromString() {
+        return TrackParser.parseAll(new JSONArray(json));
+    }
+}
@@ -0,0 +1,92 @@
+package com.contriverz.audioplayer.benchmark;
+
+import com.contriverz.audioplayer.AudioTrack;
+import com.contriverz.audioplayer.TrackQueue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue mutations as driven by setQueue, addTracks and removeTrack, and shuffle.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrackQueueBenchmark {
+
+    @Param({"1000", "50000"})
+    public int size;
+
+    private List<AudioTrack> tracks;
+    private TrackQueue queue;
+    private TrackQueue shuffled;
+    private int cursor;
+    private int shuffledIndex;
+
+    @Setup
+    public void setUp() {
+        tracks = BenchmarkData.tracks(size);
+        queue = new TrackQueue();
+        queue.addAll(tracks);
+        shuffled = new TrackQueue();
+        shuffled.addAll(tracks);
+        shuffled.setShuffle(true, 42, 0);
+    }
+
+    @Benchmark
+    public TrackQueue replaceQueue() {
+        TrackQueue replaced = new TrackQueue();
+        replaced.addAll(tracks);
+        return replaced;
+    }
+
+    @Benchmark
+    public int lookupById() {
+        cursor = (cursor + 7919) % size;
+        return queue.indexOf(tracks.get(cursor).getId());
+    }
+
+    /**
+     * Removes a track by id and appends it again, so the queue size stays constant.
+     */
+    @Benchmark
+    public int removeAndAppend() {
+        cursor = (cursor + 7919) % size;
+        AudioTrack track = tracks.get(cursor);
+        int index = queue.indexOf(track.getId());
+        queue.remove(index);
+        queue.add(track);
+        return index;
+    }
+
+    /**
+     * Builds a fresh permutation, the cost of setShuffleMode({ enabled: true }).
+     */
+    @Benchmark
+    public int shuffleOn() {
+        cursor = (cursor + 7919) % size;
+        queue.setShuffle(true, cursor, cursor);
+        return queue.nextIndex(cursor, true);
+    }
+
+    @Benchmark
+    public int nextShuffled() {
+        shuffledIndex = shuffled.nextIndex(shuffledIndex, true);
+        return shuffledIndex;
+    }
+}
@@ -0,0 +1,263 @@
+package com.contriverz.audioplayer;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Loads notification artwork through a memory LRU and a disk cache keyed by URL.
+ *
+ * Images are decoded straight down to notification size and only the downsampled
+ * copy is kept. Concurrent requests for the same URL share one fetch.
+ */
+public class ArtworkLoader {
+
+    private static final String TAG = "ArtworkLoader";
+    private static final String CACHE_DIR = "artwork";
+    private static final long DISK_MAX_BYTES = 20 * 1024 * 1024;
+    private static final long FAILURE_RETRY_MS = 60_000;
+
+    public interface Callback {
+        /**
+         * Called on the main thread, bitmap is null when the artwork could not be loaded.
+         */
+        void onArtwork(String url, Bitmap bitmap);
+    }
+
+    private final Context context;
+    private final NetworkClient network;
+    private final File diskDir;
+    private final int targetWidth;
+    private final int targetHeight;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final LruCache<String, Bitmap> memoryCache;
+
+    private final Map<String, List<Callback>> inFlight = new HashMap<>();
+    private final Map<String, Long> failures = new HashMap<>();
+
+    public ArtworkLoader(Context context, NetworkClient network) {
+        this.context = context.getApplicationContext();
+        this.network = network;
+        this.diskDir = new File(context.getCacheDir(), CACHE_DIR);
+        this.targetWidth = context.getResources().getDimensionPixelSize(android.R.dimen.notification_large_icon_width);
+        this.targetHeight = context.getResources().getDimensionPixelSize(android.R.dimen.notification_large_icon_height);
+
+        int maxBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / 32, 8 * 1024 * 1024);
+        memoryCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Memory-only lookup, cheap enough to call on every notification update.
+     */
+    public Bitmap getCached(String url) {
+        return memoryCache.get(url);
+    }
+
+    public void load(String url, Callback callback) {
+        Bitmap cached = memoryCache.get(url);
+        if (cached != null) {
+            callback.onArtwork(url, cached);
+            return;
+        }
+
+        synchronized (inFlight) {
+            Long failedAt = failures.get(url);
+            if (failedAt != null && SystemClock.elapsedRealtime() - failedAt < FAILURE_RETRY_MS) {
+                // Failed recently, answer as a failed fetch would instead of leaving the caller waiting
+                mainHandler.post(() -> callback.onArtwork(url, null));
+                return;
+            }
+
+            List<Callback> waiting = inFlight.get(url);
+            if (waiting != null) {
+                waiting.add(callback);
+                return;
+            }
+            waiting = new ArrayList<>();
+            waiting.add(callback);
+            inFlight.put(url, waiting);
+        }
+
+        executor.execute(() -> {
+            Bitmap bitmap = fetch(url);
+            List<Callback> waiting;
+            synchronized (inFlight) {
+                waiting = inFlight.remove(url);
+                if (bitmap == null) {
+                    failures.put(url, SystemClock.elapsedRealtime());
+                } else {
+                    failures.remove(url);
+                }
+            }
+            if (bitmap != null) {
+                memoryCache.put(url, bitmap);
+            }
+            mainHandler.post(() -> {
+                for (Callback waiter : waiting) {
+                    waiter.onArtwork(url, bitmap);
+                }
+            });
+        });
+    }
+
+    public void clearMemory() {
+        memoryCache.evictAll();
+    }
+
+    public void release() {
+        executor.shutdownNow();
+        memoryCache.evictAll();
+    }
+
+    private Bitmap fetch(String url) {
+        File file = new File(diskDir, hash(url));
+        if (file.exists()) {
+            Bitmap bitmap = BitmapFactory.decodeFile(file.getAbsolutePath());
+            if (bitmap != null) {
+                file.setLastModified(System.currentTimeMillis());
+                return bitmap;
+            }
+            file.delete();
+        }
+
+        File download = new File(diskDir, hash(url) + ".tmp");
+        try {
+            if (!diskDir.exists() && !diskDir.mkdirs()) return null;
+
+            try (InputStream input = open(url); OutputStream output = new FileOutputStream(download)) {
+                byte[] buffer = new byte[16 * 1024];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    output.write(buffer, 0, read);
+                }
+            }
+
+            Bitmap bitmap = decodeDownsampled(download);
+            if (bitmap == null) return null;
+
+            // Keep only the notification-sized copy on disk, PNG where JPEG would lose transparency
+            try (OutputStream output = new FileOutputStream(file)) {
+                if (bitmap.hasAlpha()) {
+                    bitmap.compress(Bitmap.CompressFormat.PNG, 100, output);
+                } else {
+                    bitmap.compress(Bitmap.CompressFormat.JPEG, 90, output);
+                }
+            }
+            trimDisk();
+            Log.d(TAG, "🖼️ Artwork cached: " + bitmap.getWidth() + "x" + bitmap.getHeight() + " for " + url);
+            return bitmap;
+        } catch (Exception e) {
+            Log.w(TAG, "Artwork load failed for " + url + ": " + e.getMessage());
+            return null;
+        } finally {
+            download.delete();
+        }
+    }
+
+    private InputStream open(String url) throws Exception {
+        if (url.startsWith("http")) {
+            Response response = network.get(url, 0);
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                response.close();
+                throw new IOException("HTTP " + response.code());
+            }
+            // Closing the stream hands the connection back to the pool
+            return body.byteStream();
+        }
+        return context.getContentResolver().openInputStream(Uri.parse(url));
+    }
+
+    private Bitmap decodeDownsampled(File file) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getAbsolutePath(), bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) return null;
+
+        int sampleSize = 1;
+        while (bounds.outWidth / (sampleSize * 2) >= targetWidth && bounds.outHeight / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        Bitmap decoded = BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+        if (decoded == null) return null;
+
+        // inSampleSize only goes in powers of two, finish with an exact scale
+        float scale = Math.min((float) targetWidth / decoded.getWidth(), (float) targetHeight / decoded.getHeight());
+        if (scale >= 1f) return decoded;
+
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded,
+                Math.max(1, Math.round(decoded.getWidth() * scale)),
+                Math.max(1, Math.round(decoded.getHeight() * scale)), true);
+        if (scaled != decoded) {
+            decoded.recycle();
+        }
+        return scaled;
+    }
+
+    private void trimDisk() {
+        File[] files = diskDir.listFiles();
+        if (files == null) return;
+
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= DISK_MAX_BYTES) return;
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (total <= DISK_MAX_BYTES) break;
+            // Another worker may still be writing it
+            if (file.getName().endsWith(".tmp")) continue;
+            total -= file.length();
+            file.delete();
+        }
+    }
+
+    private static String hash(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] bytes = digest.digest(url.getBytes("UTF-8"));
+            StringBuilder hex = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (Exception e) {
+            return Integer.toHexString(url.hashCode());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.contriverz.audioplayer;
+
+/**
+ * Buffer thresholds for the player's LoadControl.
+ *
+ * targetBufferBytes is the memory ceiling: loading stops once that much media is held,
+ * even below minBufferMs. At 320 kbps one megabyte is roughly 25 seconds of audio.
+ *
+ * Plain Java on purpose, no Android or ExoPlayer types.
+ */
+public class BufferProfile {
+
+    public static final String DEFAULT = "default";
+    public static final String FAST_START = "fastStart";
+    public static final String LOW_MEMORY = "lowMemory";
+    public static final String FLAKY_NETWORK = "flakyNetwork";
+
+    public final String name;
+    public final int minBufferMs;
+    public final int maxBufferMs;
+    public final int bufferForPlaybackMs;
+    public final int bufferForPlaybackAfterRebufferMs;
+    public final int targetBufferBytes;
+
+    public BufferProfile(String name, int minBufferMs, int maxBufferMs, int bufferForPlaybackMs,
+                         int bufferForPlaybackAfterRebufferMs, int targetBufferBytes) {
+        if (bufferForPlaybackMs < 0 || bufferForPlaybackAfterRebufferMs < 0) {
+            throw new IllegalArgumentException("Playback start thresholds must not be negative");
+        }
+        if (minBufferMs < bufferForPlaybackMs || minBufferMs < bufferForPlaybackAfterRebufferMs) {
+            throw new IllegalArgumentException("minBufferMs must cover both playback start thresholds");
+        }
+        if (maxBufferMs < minBufferMs) {
+            throw new IllegalArgumentException("maxBufferMs must not be below minBufferMs");
+        }
+        if (targetBufferBytes <= 0) {
+            throw new IllegalArgumentException("targetBufferBytes must be positive");
+        }
+        this.name = name;
+        this.minBufferMs = minBufferMs;
+        this.maxBufferMs = maxBufferMs;
+        this.bufferForPlaybackMs = bufferForPlaybackMs;
+        this.bufferForPlaybackAfterRebufferMs = bufferForPlaybackAfterRebufferMs;
+        this.targetBufferBytes = targetBufferBytes;
+    }
+
+    /**
+     * The named profile, or null for an unknown name.
+     */
+    public static BufferProfile named(String name) {
+        if (name == null) return null;
+        switch (name) {
+            case DEFAULT:
+                // ExoPlayer's own defaults, 13 MB ceiling
+                return new BufferProfile(DEFAULT, 50_000, 50_000, 2_500, 5_000, 13 * 1024 * 1024);
+            case FAST_START:
+                // Starts on half a second of audio, for short clips. 4 MB ceiling
+                return new BufferProfile(FAST_START, 15_000, 30_000, 500, 1_500, 4 * 1024 * 1024);
+            case LOW_MEMORY:
+                // Low-end devices, about 20 seconds ahead. 2 MB ceiling
+                return new BufferProfile(LOW_MEMORY, 10_000, 20_000, 1_000, 2_000, 2 * 1024 * 1024);
+            case FLAKY_NETWORK:
+                // Buffers minutes ahead and waits longer after a stall, so it stalls less often. 16 MB ceiling
+                return new BufferProfile(FLAKY_NETWORK, 60_000, 180_000, 2_500, 10_000, 16 * 1024 * 1024);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * A copy with the given thresholds replaced, null keeps this profile's value.
+     */
+    public BufferProfile withOverrides(Integer minBufferMs, Integer maxBufferMs, Integer bufferForPlaybackMs,
+                                       Integer bufferForPlaybackAfterRebufferMs, Integer targetBufferBytes) {
+        return new BufferProfile(name,
+                minBufferMs != null ? minBufferMs : this.minBufferMs,
+                maxBufferMs != null ? maxBufferMs : this.maxBufferMs,
+                bufferForPlaybackMs != null ? bufferForPlaybackMs : this.bufferForPlaybackMs,
+                bufferForPlaybackAfterRebufferMs != null ? bufferForPlaybackAfterRebufferMs : this.bufferForPlaybackAfterRebufferMs,
+                targetBufferBytes != null ? targetBufferBytes : this.targetBufferBytes);
+    }
+}
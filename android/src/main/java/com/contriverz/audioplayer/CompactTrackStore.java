@@ -0,0 +1,149 @@
+package com.contriverz.audioplayer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Column storage for large queues. Artist, album and artwork go through one
+ * dictionary, so a value repeated across thousands of tracks is held once and each
+ * track only keeps an int per column. Durations are primitive milliseconds.
+ *
+ * AudioTrack objects are created on demand by get() and are not kept, callers that
+ * need to compare tracks should compare ids.
+ *
+ * Plain Java on purpose, no Android or Capacitor types.
+ */
+public class CompactTrackStore {
+
+    private static final int NO_DURATION = Integer.MIN_VALUE;
+
+    private String[] ids;
+    private String[] titles;
+    private String[] urls;
+    private int[] artists;
+    private int[] albums;
+    private int[] artworks;
+    private int[] durationsMs;
+
+    // Shared by artist, album and artwork. Only grows, clear() drops it with the tracks.
+    private final Map<String, Integer> dictionaryIndex = new HashMap<>();
+    private String[] dictionary = new String[64];
+    private int dictionarySize;
+
+    public CompactTrackStore(int capacity) {
+        int initial = Math.max(16, capacity);
+        ids = new String[initial];
+        titles = new String[initial];
+        urls = new String[initial];
+        artists = new int[initial];
+        albums = new int[initial];
+        artworks = new int[initial];
+        durationsMs = new int[initial];
+    }
+
+    public int capacity() {
+        return ids.length;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) return;
+
+        int grown = Math.max(capacity, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, grown);
+        titles = Arrays.copyOf(titles, grown);
+        urls = Arrays.copyOf(urls, grown);
+        artists = Arrays.copyOf(artists, grown);
+        albums = Arrays.copyOf(albums, grown);
+        artworks = Arrays.copyOf(artworks, grown);
+        durationsMs = Arrays.copyOf(durationsMs, grown);
+    }
+
+    public void set(int index, AudioTrack track) {
+        ids[index] = track.getId();
+        titles[index] = track.getTitle();
+        urls[index] = track.getUrl();
+        artists[index] = encode(track.getArtist());
+        albums[index] = encode(track.getAlbum());
+        artworks[index] = encode(track.getArtwork());
+        Double duration = track.getDuration();
+        durationsMs[index] = duration != null ? (int) Math.round(duration * 1000) : NO_DURATION;
+    }
+
+    /**
+     * A new AudioTrack for this index, or null when it is empty.
+     */
+    public AudioTrack get(int index) {
+        if (ids[index] == null) return null;
+        int duration = durationsMs[index];
+        return new AudioTrack(ids[index], titles[index], decode(artists[index]), decode(albums[index]),
+                duration != NO_DURATION ? duration / 1000.0 : null, urls[index], decode(artworks[index]));
+    }
+
+    public String getId(int index) {
+        return ids[index];
+    }
+
+    public boolean isEmpty(int index) {
+        return ids[index] == null;
+    }
+
+    public void remove(int index) {
+        ids[index] = null;
+        titles[index] = null;
+        urls[index] = null;
+    }
+
+    public void move(int from, int to) {
+        if (from == to) return;
+        ids[to] = ids[from];
+        titles[to] = titles[from];
+        urls[to] = urls[from];
+        artists[to] = artists[from];
+        albums[to] = albums[from];
+        artworks[to] = artworks[from];
+        durationsMs[to] = durationsMs[from];
+        remove(from);
+    }
+
+    /**
+     * Empties indices from (inclusive) to (exclusive).
+     */
+    public void truncate(int from, int to) {
+        Arrays.fill(ids, from, to, null);
+        Arrays.fill(titles, from, to, null);
+        Arrays.fill(urls, from, to, null);
+    }
+
+    public void clear(int count) {
+        truncate(0, count);
+        dictionaryIndex.clear();
+        Arrays.fill(dictionary, 0, dictionarySize, null);
+        dictionarySize = 0;
+    }
+
+    /**
+     * Number of distinct artist, album and artwork values held.
+     */
+    public int getDictionarySize() {
+        return dictionarySize;
+    }
+
+    private int encode(String value) {
+        if (value == null) return -1;
+
+        Integer code = dictionaryIndex.get(value);
+        if (code != null) return code;
+
+        if (dictionarySize == dictionary.length) {
+            dictionary = Arrays.copyOf(dictionary, dictionarySize * 2);
+        }
+        dictionary[dictionarySize] = value;
+        dictionaryIndex.put(value, dictionarySize);
+        return dictionarySize++;
+    }
+
+    private String decode(int code) {
+        return code >= 0 ? dictionary[code] : null;
+    }
+}
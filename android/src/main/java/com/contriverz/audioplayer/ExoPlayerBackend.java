@@ -0,0 +1,297 @@
+package com.contriverz.audioplayer;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.PlaybackException;
+import com.google.android.exoplayer2.PlaybackParameters;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.SeekParameters;
+import com.google.android.exoplayer2.source.DefaultMediaSourceFactory;
+import com.google.android.exoplayer2.upstream.DataSource;
+
+import java.util.Collections;
+
+/**
+ * PlayerBackend on top of ExoPlayer. The ExoPlayer playlist is kept to the current
+ * item plus the next one, so ExoPlayer still hands over gaplessly while the queue,
+ * repeat "all" and shuffle stay in PlaybackEngine.
+ */
+public class ExoPlayerBackend implements PlayerBackend {
+
+    private final ExoPlayer player;
+    private final Handler handler;
+    private final UriResolver uriResolver;
+    private Listener listener;
+
+    // A load waiting for its Uri. Seeks and setNext calls made meanwhile land here.
+    private boolean loadPending;
+    private long pendingPositionMs;
+    private AudioTrack pendingNext;
+    // Bumped per load and setNext, a resolved Uri is dropped once its request is stale
+    private int loadGeneration;
+    private int nextGeneration;
+
+    public ExoPlayerBackend(Context context, DataSource.Factory dataSourceFactory, UriResolver uriResolver) {
+        this(buildPlayer(context, dataSourceFactory, null, null, null), uriResolver);
+    }
+
+    /**
+     * Wraps a player from buildPlayer(). Call on the player's looper thread.
+     */
+    public ExoPlayerBackend(ExoPlayer player, UriResolver uriResolver) {
+        this.player = player;
+        this.uriResolver = uriResolver;
+        handler = new Handler(player.getApplicationLooper());
+        player.addListener(new Player.Listener() {
+            @Override
+            public void onPlaybackStateChanged(int state) {
+                if (listener == null) return;
+                listener.onPlaybackStateChanged(state);
+                if (state == Player.STATE_ENDED) {
+                    listener.onEnded();
+                }
+            }
+
+            @Override
+            public void onMediaItemTransition(MediaItem mediaItem, int reason) {
+                if (reason != Player.MEDIA_ITEM_TRANSITION_REASON_AUTO) return;
+
+                // Drop what has finished, the new current item moves to index 0
+                int index = player.getCurrentMediaItemIndex();
+                if (index > 0) {
+                    player.removeMediaItems(0, index);
+                }
+                if (listener != null) listener.onAutoAdvance();
+            }
+
+            @Override
+            public void onPositionDiscontinuity(@NonNull Player.PositionInfo oldPosition,
+                                                @NonNull Player.PositionInfo newPosition, int reason) {
+                if (listener != null && (reason == Player.DISCONTINUITY_REASON_SEEK
+                        || reason == Player.DISCONTINUITY_REASON_SEEK_ADJUSTMENT)) {
+                    listener.onSeek();
+                }
+            }
+
+            @Override
+            public void onPlaybackParametersChanged(@NonNull PlaybackParameters playbackParameters) {
+                if (listener != null) listener.onRateChanged(playbackParameters.speed);
+            }
+
+            @Override
+            public void onIsPlayingChanged(boolean playing) {
+                if (listener != null) listener.onIsPlayingChanged(playing);
+            }
+
+            @Override
+            public void onPlayerError(@NonNull PlaybackException error) {
+                if (listener != null) listener.onError(error.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Builds the player and its renderers. With a looper the player, and every call into
+     * it, belongs to that looper's thread, and building it can happen on any thread,
+     * which is what lets warm-up run in the background. A null loadControl keeps
+     * ExoPlayer's default buffering, a null seekIndex ExoPlayer's own MP3 seeking.
+     */
+    public static ExoPlayer buildPlayer(Context context, DataSource.Factory dataSourceFactory,
+                                        LoadControl loadControl, Looper looper, SeekIndexStore seekIndex) {
+        ExoPlayer.Builder builder = new ExoPlayer.Builder(context)
+                .setMediaSourceFactory(seekIndex != null
+                        ? new SeekIndexMediaSourceFactory(dataSourceFactory, seekIndex)
+                        : new DefaultMediaSourceFactory(dataSourceFactory));
+        if (loadControl != null) {
+            builder.setLoadControl(loadControl);
+        }
+        if (looper != null) {
+            builder.setLooper(looper);
+        }
+        return builder.build();
+    }
+
+    /**
+     * The underlying player, for Android-side hooks such as analytics listeners.
+     */
+    public ExoPlayer getPlayer() {
+        return player;
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void load(AudioTrack track, AudioTrack next, long positionMs) {
+        int generation = ++loadGeneration;
+        nextGeneration++;
+        loadPending = true;
+        pendingPositionMs = positionMs;
+        pendingNext = next;
+
+        uriResolver.resolve(track, handler, uri -> {
+            if (generation != loadGeneration) return;
+
+            loadPending = false;
+            player.setMediaItems(Collections.singletonList(buildMediaItem(track, uri)), 0, pendingPositionMs);
+            player.prepare();
+            setNext(pendingNext);
+        });
+
+        // Still resolving off-thread, the previous track should not keep playing meanwhile
+        if (loadPending) {
+            player.stop();
+        }
+    }
+
+    @Override
+    public void setNext(AudioTrack next) {
+        if (loadPending) {
+            pendingNext = next;
+            return;
+        }
+
+        int current = player.getCurrentMediaItemIndex();
+        int count = player.getMediaItemCount();
+        if (count == 0) return;
+
+        // Already queued, leave the buffered item alone
+        if (count == current + 2 && next != null && plays(player.getMediaItemAt(current + 1), next)) {
+            return;
+        }
+
+        if (count > current + 1) {
+            player.removeMediaItems(current + 1, count);
+        }
+        if (next == null) {
+            nextGeneration++;
+            return;
+        }
+
+        int generation = ++nextGeneration;
+        uriResolver.resolve(next, handler, uri -> {
+            if (generation != nextGeneration) return;
+            player.addMediaItem(buildMediaItem(next, uri));
+        });
+    }
+
+    @Override
+    public void setLooping(boolean looping) {
+        player.setRepeatMode(looping ? Player.REPEAT_MODE_ONE : Player.REPEAT_MODE_OFF);
+    }
+
+    @Override
+    public void play() {
+        player.setPlayWhenReady(true);
+    }
+
+    @Override
+    public void pause() {
+        player.setPlayWhenReady(false);
+    }
+
+    @Override
+    public void stop() {
+        player.stop();
+    }
+
+    @Override
+    public void seekTo(long positionMs) {
+        if (loadPending) {
+            pendingPositionMs = positionMs;
+            return;
+        }
+        player.seekTo(positionMs);
+    }
+
+    @Override
+    public void setScrubbing(boolean scrubbing) {
+        // Closest sync avoids decoding up to the exact frame, which is what makes drags cheap
+        player.setSeekParameters(scrubbing ? SeekParameters.CLOSEST_SYNC : SeekParameters.EXACT);
+    }
+
+    @Override
+    public void setRate(float rate) {
+        player.setPlaybackSpeed(rate);
+    }
+
+    @Override
+    public float getRate() {
+        return player.getPlaybackParameters().speed;
+    }
+
+    @Override
+    public void setVolume(float volume) {
+        player.setVolume(volume);
+    }
+
+    @Override
+    public float getVolume() {
+        return player.getVolume();
+    }
+
+    @Override
+    public boolean getPlayWhenReady() {
+        return player.getPlayWhenReady();
+    }
+
+    @Override
+    public boolean isPlaying() {
+        return player.isPlaying();
+    }
+
+    @Override
+    public long getPositionMs() {
+        return loadPending ? pendingPositionMs : player.getCurrentPosition();
+    }
+
+    @Override
+    public long getDurationMs() {
+        if (loadPending) return -1;
+        long duration = player.getDuration();
+        return duration > 0 ? duration : -1;
+    }
+
+    @Override
+    public long getBufferedPositionMs() {
+        return player.getBufferedPosition();
+    }
+
+    @Override
+    public void release() {
+        loadGeneration++;
+        nextGeneration++;
+        player.release();
+    }
+
+    private MediaItem buildMediaItem(AudioTrack track, Uri uri) {
+        return new MediaItem.Builder()
+                .setMediaId(track.getId())
+                .setUri(uri)
+                .setCustomCacheKey(MediaCache.cacheKey(track))
+                .setTag(track)
+                .build();
+    }
+
+    /**
+     * Whether the item was built for this queue entry. Ids need not be unique, so the url
+     * has to match too. Not the reference, compact storage hands out a new AudioTrack
+     * for every lookup.
+     */
+    private static boolean plays(MediaItem item, AudioTrack track) {
+        Object tag = item.localConfiguration != null ? item.localConfiguration.tag : null;
+        if (!(tag instanceof AudioTrack)) return false;
+        AudioTrack queued = (AudioTrack) tag;
+        return queued.getId().equals(track.getId()) && queued.getUrl().equals(track.getUrl());
+    }
+}
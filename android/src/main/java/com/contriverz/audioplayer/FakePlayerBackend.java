@@ -0,0 +1,218 @@
+package com.contriverz.audioplayer;
+
+/**
+ * Deterministic in-memory PlayerBackend. Nothing is decoded and no time passes
+ * on its own, advance() moves the clock and fires the callbacks a real player would.
+ *
+ * Tracks are READY as soon as they are loaded and last for their duration,
+ * or DEFAULT_DURATION_MS when they have none.
+ */
+public class FakePlayerBackend implements PlayerBackend {
+
+    public static final long DEFAULT_DURATION_MS = 180_000;
+
+    private Listener listener;
+    private AudioTrack current;
+    private AudioTrack next;
+    private int state = STATE_IDLE;
+    private boolean playWhenReady;
+    private boolean looping;
+    private boolean scrubbing;
+    private float rate = 1f;
+    private float volume = 1f;
+    private long positionMs;
+    private int loadCount;
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void load(AudioTrack track, AudioTrack next, long positionMs) {
+        boolean wasPlaying = isPlaying();
+        this.current = track;
+        this.next = next;
+        this.positionMs = Math.max(0, positionMs);
+        loadCount++;
+        setState(STATE_READY, wasPlaying);
+    }
+
+    @Override
+    public void setNext(AudioTrack next) {
+        this.next = next;
+    }
+
+    @Override
+    public void setLooping(boolean looping) {
+        this.looping = looping;
+    }
+
+    @Override
+    public void play() {
+        boolean wasPlaying = isPlaying();
+        playWhenReady = true;
+        notifyPlaying(wasPlaying);
+    }
+
+    @Override
+    public void pause() {
+        boolean wasPlaying = isPlaying();
+        playWhenReady = false;
+        notifyPlaying(wasPlaying);
+    }
+
+    @Override
+    public void stop() {
+        setState(STATE_IDLE, isPlaying());
+    }
+
+    @Override
+    public void seekTo(long positionMs) {
+        if (current == null) return;
+        this.positionMs = Math.max(0, Math.min(positionMs, durationOf(current)));
+        if (state == STATE_ENDED) {
+            setState(STATE_READY, false);
+        }
+        if (listener != null) listener.onSeek();
+    }
+
+    @Override
+    public void setScrubbing(boolean scrubbing) {
+        // Seeks stay exact here, only the mode is recorded
+        this.scrubbing = scrubbing;
+    }
+
+    @Override
+    public void setRate(float rate) {
+        if (this.rate == rate) return;
+        this.rate = rate;
+        if (listener != null) listener.onRateChanged(rate);
+    }
+
+    @Override
+    public float getRate() {
+        return rate;
+    }
+
+    @Override
+    public void setVolume(float volume) {
+        this.volume = volume;
+    }
+
+    @Override
+    public float getVolume() {
+        return volume;
+    }
+
+    @Override
+    public boolean getPlayWhenReady() {
+        return playWhenReady;
+    }
+
+    @Override
+    public boolean isPlaying() {
+        return playWhenReady && state == STATE_READY;
+    }
+
+    @Override
+    public long getPositionMs() {
+        return positionMs;
+    }
+
+    @Override
+    public long getDurationMs() {
+        return current != null ? durationOf(current) : -1;
+    }
+
+    @Override
+    public long getBufferedPositionMs() {
+        return getDurationMs();
+    }
+
+    @Override
+    public void release() {
+        stop();
+        current = null;
+        next = null;
+    }
+
+    /**
+     * Lets elapsedMs of wall time pass, advancing, looping or ending as a real player would.
+     */
+    public void advance(long elapsedMs) {
+        long remaining = (long) (elapsedMs * rate);
+        while (isPlaying() && remaining > 0) {
+            long duration = durationOf(current);
+            long left = duration - positionMs;
+            if (remaining < left) {
+                positionMs += remaining;
+                return;
+            }
+            remaining -= left;
+
+            if (looping) {
+                positionMs = remaining % duration;
+                return;
+            }
+            if (next != null) {
+                current = next;
+                next = null;
+                positionMs = 0;
+                if (listener != null) listener.onAutoAdvance();
+                continue;
+            }
+
+            positionMs = duration;
+            setState(STATE_ENDED, true);
+            if (listener != null) listener.onEnded();
+        }
+    }
+
+    public AudioTrack getCurrentTrack() {
+        return current;
+    }
+
+    public AudioTrack getNextTrack() {
+        return next;
+    }
+
+    public int getState() {
+        return state;
+    }
+
+    public boolean isLooping() {
+        return looping;
+    }
+
+    public boolean isScrubbing() {
+        return scrubbing;
+    }
+
+    /**
+     * Number of load() calls, a gapless hand-over does not count as one.
+     */
+    public int getLoadCount() {
+        return loadCount;
+    }
+
+    private void setState(int state, boolean wasPlaying) {
+        if (this.state != state) {
+            this.state = state;
+            if (listener != null) listener.onPlaybackStateChanged(state);
+        }
+        notifyPlaying(wasPlaying);
+    }
+
+    private void notifyPlaying(boolean wasPlaying) {
+        boolean playing = isPlaying();
+        if (playing != wasPlaying && listener != null) {
+            listener.onIsPlayingChanged(playing);
+        }
+    }
+
+    private static long durationOf(AudioTrack track) {
+        Double duration = track.getDuration();
+        return duration != null && duration > 0 ? (long) (duration * 1000) : DEFAULT_DURATION_MS;
+    }
+}
@@ -0,0 +1,167 @@
+package com.contriverz.audioplayer;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.audio.MpegAudioUtil;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.SeekPoint;
+import com.google.android.exoplayer2.extractor.TrackOutput;
+import com.google.android.exoplayer2.extractor.mp3.Mp3Extractor;
+
+import java.io.IOException;
+
+/**
+ * MP3 extractor that seeks with a stored Mp3SeekIndex instead of estimating.
+ *
+ * Every seek goes to the exact byte of an index entry, and sample times count on from
+ * that entry's time, so position stays right however variable the bitrate. When the
+ * stream length shows the file changed since it was indexed, the index is dropped and
+ * ExoPlayer's own Mp3Extractor takes over.
+ */
+public class IndexedMp3Extractor implements Extractor {
+
+    private final Mp3SeekIndex index;
+    private final Runnable onMismatch;
+    private final Mp3Extractor fallback = new Mp3Extractor();
+    private final MpegAudioUtil.Header header = new MpegAudioUtil.Header();
+    private final byte[] scratch = new byte[4];
+
+    private ExtractorOutput output;
+    private TrackOutput trackOutput;
+    private boolean checked;
+    private boolean useFallback;
+    private boolean formatSent;
+
+    private long basisTimeUs;
+    private long framesRead;
+    private long sampleTimeUs;
+    private int sampleSize;
+    private int sampleBytesRemaining;
+
+    public IndexedMp3Extractor(Mp3SeekIndex index, Runnable onMismatch) {
+        this.index = index;
+        this.onMismatch = onMismatch;
+    }
+
+    @Override
+    public boolean sniff(ExtractorInput input) throws IOException {
+        return fallback.sniff(input);
+    }
+
+    @Override
+    public void init(ExtractorOutput output) {
+        this.output = output;
+    }
+
+    @Override
+    public int read(ExtractorInput input, PositionHolder seekPosition) throws IOException {
+        if (!checked) {
+            checked = true;
+            long length = input.getLength();
+            if (length != C.LENGTH_UNSET && length != index.getLength()) {
+                useFallback = true;
+                onMismatch.run();
+                fallback.init(output);
+            } else {
+                trackOutput = output.track(0, C.TRACK_TYPE_AUDIO);
+                output.endTracks();
+                output.seekMap(new IndexSeekMap());
+            }
+        }
+        if (useFallback) {
+            return fallback.read(input, seekPosition);
+        }
+
+        // Tags and the Xing frame come before the first indexed frame
+        long skip = index.getOffset(0) - input.getPosition();
+        if (skip > 0) {
+            input.skipFully((int) skip);
+        }
+
+        if (sampleBytesRemaining == 0) {
+            if (!input.peekFully(scratch, 0, 4, true)) {
+                return RESULT_END_OF_INPUT;
+            }
+            input.resetPeekPosition();
+            int headerData = (scratch[0] & 0xff) << 24 | (scratch[1] & 0xff) << 16
+                    | (scratch[2] & 0xff) << 8 | (scratch[3] & 0xff);
+            if (!header.setForHeaderData(headerData) || header.sampleRate != index.getSampleRate()
+                    || header.samplesPerFrame != index.getSamplesPerFrame()) {
+                // A trailing tag or a damaged frame, look for the next header a byte on
+                input.skipFully(1);
+                return RESULT_CONTINUE;
+            }
+
+            if (!formatSent) {
+                formatSent = true;
+                trackOutput.format(new Format.Builder()
+                        .setSampleMimeType(header.mimeType)
+                        .setMaxInputSize(MpegAudioUtil.MAX_FRAME_SIZE_BYTES)
+                        .setChannelCount(header.channels)
+                        .setSampleRate(header.sampleRate)
+                        .build());
+            }
+            sampleTimeUs = basisTimeUs + framesRead * header.samplesPerFrame * C.MICROS_PER_SECOND / header.sampleRate;
+            sampleSize = header.frameSize;
+            sampleBytesRemaining = sampleSize;
+        }
+
+        int appended = trackOutput.sampleData(input, sampleBytesRemaining, true);
+        if (appended == C.RESULT_END_OF_INPUT) {
+            return RESULT_END_OF_INPUT;
+        }
+        sampleBytesRemaining -= appended;
+        if (sampleBytesRemaining > 0) {
+            return RESULT_CONTINUE;
+        }
+
+        trackOutput.sampleMetadata(sampleTimeUs, C.BUFFER_FLAG_KEY_FRAME, sampleSize, 0, null);
+        framesRead++;
+        return RESULT_CONTINUE;
+    }
+
+    @Override
+    public void seek(long position, long timeUs) {
+        if (useFallback) {
+            fallback.seek(position, timeUs);
+            return;
+        }
+        // timeUs is the time asked for, position the entry at or before it, so samples count on
+        // from that entry's own time. Anything before the first frame reads from entry 0.
+        int entry = position <= index.getOffset(0) ? 0 : index.getEntryAtOffset(position);
+        basisTimeUs = entry >= 0 ? index.getTimeUs(entry) : timeUs;
+        framesRead = 0;
+        sampleBytesRemaining = 0;
+    }
+
+    @Override
+    public void release() {
+        fallback.release();
+    }
+
+    private class IndexSeekMap implements SeekMap {
+        @Override
+        public boolean isSeekable() {
+            return true;
+        }
+
+        @Override
+        public long getDurationUs() {
+            return index.getDurationUs();
+        }
+
+        @Override
+        public SeekPoints getSeekPoints(long timeUs) {
+            int entry = index.getEntryIndex(timeUs);
+            SeekPoint point = new SeekPoint(index.getTimeUs(entry), index.getOffset(entry));
+            if (point.timeUs >= timeUs || entry == index.getEntryCount() - 1) {
+                return new SeekPoints(point);
+            }
+            return new SeekPoints(point, new SeekPoint(index.getTimeUs(entry + 1), index.getOffset(entry + 1)));
+        }
+    }
+}
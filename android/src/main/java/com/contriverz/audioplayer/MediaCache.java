@@ -0,0 +1,186 @@
+package com.contriverz.audioplayer;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.google.android.exoplayer2.database.StandaloneDatabaseProvider;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DefaultDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.ContentMetadata;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * On-disk LRU cache for streamed audio, shared by playback and prefetch.
+ *
+ * Prefetched bytes always go through it. Playback only writes what it streams
+ * when the persistent cache is enabled, otherwise the cache stays capped at the
+ * small prefetch size. Entries are keyed by AudioTrack id, so a track keeps its
+ * cache entry even if its URL is re-signed.
+ */
+public class MediaCache {
+
+    private static final String TAG = "MediaCache";
+    private static final String CACHE_DIR = "audio-cache";
+    private static final String PREFS_NAME = "AudioPlayerMediaCache";
+    private static final String PREF_ENABLED = "enabled";
+    private static final String PREF_MAX_BYTES = "maxBytes";
+
+    public static final long PREFETCH_MAX_BYTES = 32L * 1024 * 1024;
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static SimpleCache cache;
+    private static ResizableLruEvictor evictor;
+
+    private final SharedPreferences prefs;
+    private final SimpleCache simpleCache;
+    private final CacheDataSource.Factory writeFactory;
+    private final DataSource.Factory readOnlyFactory;
+    private final DataSource.Factory readWriteFactory;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private volatile boolean enabled;
+    private long maxBytes;
+
+    /**
+     * upstreamFactory fetches over HTTP what the cache does not hold.
+     */
+    public MediaCache(Context context, DataSource.Factory upstreamFactory) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        enabled = prefs.getBoolean(PREF_ENABLED, false);
+        maxBytes = prefs.getLong(PREF_MAX_BYTES, DEFAULT_MAX_BYTES);
+
+        simpleCache = getCache(context, enabled ? maxBytes : PREFETCH_MAX_BYTES, executor);
+
+        writeFactory = new CacheDataSource.Factory()
+                .setCache(simpleCache)
+                .setUpstreamDataSourceFactory(upstreamFactory);
+
+        CacheDataSource.Factory readOnly = new CacheDataSource.Factory()
+                .setCache(simpleCache)
+                .setUpstreamDataSourceFactory(upstreamFactory)
+                .setCacheWriteDataSinkFactory(null)
+                .setFlags(CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR);
+        CacheDataSource.Factory readWrite = new CacheDataSource.Factory()
+                .setCache(simpleCache)
+                .setUpstreamDataSourceFactory(upstreamFactory)
+                .setFlags(CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR);
+
+        // DefaultDataSource only routes http(s) through the cache, files and content URIs stay direct
+        readOnlyFactory = new DefaultDataSource.Factory(context, readOnly);
+        readWriteFactory = new DefaultDataSource.Factory(context, readWrite);
+    }
+
+    private static synchronized SimpleCache getCache(Context context, long maxBytes, ExecutorService executor) {
+        // SimpleCache locks its folder, so there can only be one per process
+        if (cache == null) {
+            File dir = new File(context.getCacheDir(), CACHE_DIR);
+            evictor = new ResizableLruEvictor(maxBytes);
+            cache = new SimpleCache(dir, evictor, new StandaloneDatabaseProvider(context));
+        } else if (evictor.getMaxBytes() != maxBytes) {
+            // Opened by an earlier instance, e.g. before the plugin was recreated, this one's cap applies now
+            ResizableLruEvictor shared = evictor;
+            executor.execute(() -> shared.setMaxBytes(maxBytes));
+        }
+        return cache;
+    }
+
+    /**
+     * Data source factory for the player. Whether streamed bytes get written is
+     * decided per load, so enabling the cache applies from the next track on.
+     */
+    public DataSource.Factory getPlaybackDataSourceFactory() {
+        return () -> (enabled ? readWriteFactory : readOnlyFactory).createDataSource();
+    }
+
+    /**
+     * Reads what is cached and fetches the rest without writing it, for background readers
+     * that should not push played audio out of the cache.
+     */
+    public DataSource.Factory getReadDataSourceFactory() {
+        return readOnlyFactory;
+    }
+
+    /**
+     * Factory for background writers such as the prefetcher.
+     */
+    public CacheDataSource.Factory getWriteDataSourceFactory() {
+        return writeFactory;
+    }
+
+    public static String cacheKey(AudioTrack track) {
+        return track.getId();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized void configure(boolean enabled, long maxBytes) {
+        this.enabled = enabled;
+        this.maxBytes = maxBytes > 0 ? maxBytes : DEFAULT_MAX_BYTES;
+        prefs.edit()
+                .putBoolean(PREF_ENABLED, enabled)
+                .putLong(PREF_MAX_BYTES, this.maxBytes)
+                .apply();
+
+        long cap = enabled ? this.maxBytes : PREFETCH_MAX_BYTES;
+        executor.execute(() -> evictor.setMaxBytes(cap));
+        Log.d(TAG, "💾 Cache " + (enabled ? "enabled" : "disabled") + ", cap " + cap + " bytes");
+    }
+
+    public long getUsedBytes() {
+        return simpleCache.getCacheSpace();
+    }
+
+    public int getEntryCount() {
+        return simpleCache.getKeys().size();
+    }
+
+    public boolean isCached(AudioTrack track) {
+        return !simpleCache.getCachedSpans(cacheKey(track)).isEmpty();
+    }
+
+    /**
+     * Whether every byte of the track is in the cache, so reading it needs no network.
+     */
+    public boolean isFullyCached(AudioTrack track) {
+        String key = cacheKey(track);
+        long length = ContentMetadata.getContentLength(simpleCache.getContentMetadata(key));
+        return length > 0 && simpleCache.isCached(key, 0, length);
+    }
+
+    /**
+     * Removes one track, or everything when trackId is null. Runs off the caller's thread.
+     */
+    public void clear(String trackId, Runnable onDone) {
+        executor.execute(() -> {
+            try {
+                List<String> keys = trackId != null ? Collections.singletonList(trackId) : new ArrayList<>(simpleCache.getKeys());
+                for (String key : keys) {
+                    simpleCache.removeResource(key);
+                }
+                Log.d(TAG, "🧹 Cleared " + keys.size() + " cache entries");
+            } catch (Exception e) {
+                Log.e(TAG, "Cache clear failed", e);
+            }
+            if (onDone != null) onDone.run();
+        });
+    }
+
+    public void release() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,72 @@
+package com.contriverz.audioplayer;
+
+/**
+ * Fixed-bucket latency histogram. Buckets are allocated once, so recording a
+ * sample is a bounds scan and an increment, with no allocation.
+ */
+public class MetricsHistogram {
+
+    // Upper bounds in ms, the last bucket catches everything above
+    private static final long[] BOUNDS_MS = {10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private final long[] counts = new long[BOUNDS_MS.length + 1];
+    private long total;
+    private long sumMs;
+    private long maxMs;
+
+    public void record(long valueMs) {
+        int bucket = 0;
+        while (bucket < BOUNDS_MS.length && valueMs > BOUNDS_MS[bucket]) {
+            bucket++;
+        }
+        counts[bucket]++;
+        total++;
+        sumMs += valueMs;
+        if (valueMs > maxMs) maxMs = valueMs;
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        total = 0;
+        sumMs = 0;
+        maxMs = 0;
+    }
+
+    public long getCount() {
+        return total;
+    }
+
+    public long getMeanMs() {
+        return total > 0 ? sumMs / total : 0;
+    }
+
+    public long getMaxMs() {
+        return maxMs;
+    }
+
+    /**
+     * Smallest bucket bound at or above the given percentile, an upper estimate.
+     */
+    public long getPercentileMs(double percentile) {
+        if (total == 0) return 0;
+        long threshold = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= threshold) {
+                return i < BOUNDS_MS.length ? BOUNDS_MS[i] : maxMs;
+            }
+        }
+        return maxMs;
+    }
+
+    public static long[] getBoundsMs() {
+        return BOUNDS_MS.clone();
+    }
+
+    public long[] getCounts() {
+        return counts.clone();
+    }
+}
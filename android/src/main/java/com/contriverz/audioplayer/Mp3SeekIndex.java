@@ -0,0 +1,333 @@
+package com.contriverz.audioplayer;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Time to byte offset table for an MPEG audio layer III stream, one entry about every second.
+ *
+ * Entries sit a fixed number of frames apart, so the time of each one is exact and a
+ * seek lands on a frame boundary with a single range request, however variable the
+ * bitrate. Built once by scanning frame headers, which is cheap next to decoding.
+ *
+ * Plain Java on purpose, no Android or ExoPlayer types.
+ */
+public class Mp3SeekIndex {
+
+    private static final int MAGIC = 0x4d534958; // "MSIX"
+    private static final int VERSION = 1;
+
+    private static final int[] SAMPLE_RATES = {44100, 48000, 32000};
+    private static final int[] BITRATES_V1 = {32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320};
+    private static final int[] BITRATES_V2 = {8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160};
+
+    private final int sampleRate;
+    private final int samplesPerFrame;
+    private final int framesPerEntry;
+    private final long totalFrames;
+    private final long length;
+    private final long[] offsets;
+
+    Mp3SeekIndex(int sampleRate, int samplesPerFrame, int framesPerEntry, long totalFrames, long length,
+                 long[] offsets) {
+        this.sampleRate = sampleRate;
+        this.samplesPerFrame = samplesPerFrame;
+        this.framesPerEntry = framesPerEntry;
+        this.totalFrames = totalFrames;
+        this.length = length;
+        this.offsets = offsets;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getSamplesPerFrame() {
+        return samplesPerFrame;
+    }
+
+    /**
+     * Byte length of the whole stream the index was built from, tags included.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    public long getDurationUs() {
+        return totalFrames * samplesPerFrame * 1_000_000L / sampleRate;
+    }
+
+    public int getEntryCount() {
+        return offsets.length;
+    }
+
+    public long getTimeUs(int entry) {
+        return (long) entry * framesPerEntry * samplesPerFrame * 1_000_000L / sampleRate;
+    }
+
+    public long getOffset(int entry) {
+        return offsets[entry];
+    }
+
+    /**
+     * The last entry at or before timeUs.
+     */
+    public int getEntryIndex(long timeUs) {
+        if (timeUs <= 0) return 0;
+        long frame = timeUs * sampleRate / (samplesPerFrame * 1_000_000L);
+        int entry = (int) Math.min(frame / framesPerEntry, offsets.length - 1);
+        // Entry times are rounded down, so an entry's own time can divide to the one before
+        if (entry + 1 < offsets.length && getTimeUs(entry + 1) <= timeUs) entry++;
+        return entry;
+    }
+
+    /**
+     * The entry that starts at this byte offset, or -1 when none does.
+     */
+    public int getEntryAtOffset(long offset) {
+        int entry = Arrays.binarySearch(offsets, offset);
+        return entry >= 0 ? entry : -1;
+    }
+
+    // Frame headers
+
+    /**
+     * Layer III frame size in bytes, or -1 if the header is not a usable layer III header.
+     */
+    static int frameSize(int header) {
+        if ((header & 0xFFE00000) != 0xFFE00000) return -1;
+        int version = (header >>> 19) & 3;
+        int layer = (header >>> 17) & 3;
+        int bitrateIndex = (header >>> 12) & 15;
+        int sampleRateIndex = (header >>> 10) & 3;
+        // Reserved version, not layer III, free format, bad bitrate or reserved rate
+        if (version == 1 || layer != 1 || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3) {
+            return -1;
+        }
+
+        int bitrate = (version == 3 ? BITRATES_V1 : BITRATES_V2)[bitrateIndex - 1] * 1000;
+        int padding = (header >>> 9) & 1;
+        return (version == 3 ? 144 : 72) * bitrate / sampleRate(header) + padding;
+    }
+
+    static int sampleRate(int header) {
+        int version = (header >>> 19) & 3;
+        int rate = SAMPLE_RATES[(header >>> 10) & 3];
+        // MPEG 1, 2 and 2.5
+        return version == 3 ? rate : version == 2 ? rate / 2 : rate / 4;
+    }
+
+    static int samplesPerFrame(int header) {
+        return ((header >>> 19) & 3) == 3 ? 1152 : 576;
+    }
+
+    /**
+     * Whether a frame carries a Xing, Info or VBRI header instead of audio. body is the
+     * frame after its 4 header bytes.
+     */
+    private static boolean isInfoFrame(int header, byte[] body) {
+        boolean mpeg1 = ((header >>> 19) & 3) == 3;
+        boolean mono = ((header >>> 6) & 3) == 3;
+        int xingOffset = (mpeg1 ? (mono ? 21 : 36) : (mono ? 13 : 21)) - 4;
+        return tagAt(body, xingOffset, "Xing") || tagAt(body, xingOffset, "Info") || tagAt(body, 36 - 4, "VBRI");
+    }
+
+    private static boolean tagAt(byte[] frame, int offset, String tag) {
+        if (offset + 4 > frame.length) return false;
+        for (int i = 0; i < 4; i++) {
+            if (frame[offset + i] != tag.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    // Scanning
+
+    /**
+     * Reads the stream to its end and indexes every audio frame. Returns null when it is
+     * not layer III audio. Does not close the stream.
+     */
+    public static Mp3SeekIndex scan(InputStream stream) throws IOException {
+        CountingStream in = new CountingStream(new BufferedInputStream(stream, 64 * 1024));
+
+        int header = in.readInt();
+        if ((header >>> 8) == 0x494433) { // "ID3"
+            byte[] id3 = new byte[6];
+            in.readFully(id3, 0, 6);
+            int size = (id3[2] & 0x7f) << 21 | (id3[3] & 0x7f) << 14 | (id3[4] & 0x7f) << 7 | (id3[5] & 0x7f);
+            boolean footer = (id3[1] & 0x10) != 0;
+            in.skipFully(size + (footer ? 10 : 0));
+            header = in.readInt();
+        }
+
+        // Junk is skipped a byte at a time, but the first frame has to show up within 64 KB
+        int firstHeader = 0;
+        byte[] frame = new byte[4096];
+        long[] offsets = new long[256];
+        int entries = 0;
+        long frames = 0;
+        int framesPerEntry = 0;
+        boolean infoChecked = false;
+
+        while (true) {
+            long offset = in.position - 4;
+            int size = frameSize(header);
+            boolean matches = size > 0 && (firstHeader == 0 || (header & 0xFFFE0C00) == (firstHeader & 0xFFFE0C00));
+            if (!matches) {
+                if (firstHeader == 0 && in.position > 64 * 1024) return null;
+                int next = in.read();
+                if (next < 0) break;
+                header = header << 8 | next;
+                continue;
+            }
+
+            if (!in.readFullyOrEnd(frame, 0, size - 4)) break;
+            if (firstHeader == 0) {
+                firstHeader = header;
+                framesPerEntry = Math.max(1, Math.round((float) sampleRate(header) / samplesPerFrame(header)));
+            }
+            if (!infoChecked) {
+                infoChecked = true;
+                if (isInfoFrame(header, frame)) {
+                    header = in.readIntOrEnd();
+                    if (in.ended) break;
+                    continue;
+                }
+            }
+
+            if (frames % framesPerEntry == 0) {
+                if (entries == offsets.length) {
+                    long[] grown = new long[entries * 2];
+                    System.arraycopy(offsets, 0, grown, 0, entries);
+                    offsets = grown;
+                }
+                offsets[entries++] = offset;
+            }
+            frames++;
+
+            header = in.readIntOrEnd();
+            if (in.ended) break;
+        }
+
+        if (frames == 0) return null;
+        long[] trimmed = new long[entries];
+        System.arraycopy(offsets, 0, trimmed, 0, entries);
+        return new Mp3SeekIndex(sampleRate(firstHeader), samplesPerFrame(firstHeader), framesPerEntry, frames,
+                in.position, trimmed);
+    }
+
+    // Storage, offsets as deltas so each fits an int
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(sampleRate);
+        out.writeInt(samplesPerFrame);
+        out.writeInt(framesPerEntry);
+        out.writeLong(totalFrames);
+        out.writeLong(length);
+        out.writeInt(offsets.length);
+        long previous = 0;
+        for (long offset : offsets) {
+            out.writeInt((int) (offset - previous));
+            previous = offset;
+        }
+    }
+
+    static Mp3SeekIndex read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not a seek index");
+        }
+        int sampleRate = in.readInt();
+        int samplesPerFrame = in.readInt();
+        int framesPerEntry = in.readInt();
+        long totalFrames = in.readLong();
+        long length = in.readLong();
+        int count = in.readInt();
+        if (sampleRate <= 0 || samplesPerFrame <= 0 || framesPerEntry <= 0 || count <= 0) {
+            throw new IOException("Damaged seek index");
+        }
+
+        long[] offsets = new long[count];
+        long offset = 0;
+        for (int i = 0; i < count; i++) {
+            offset += in.readInt();
+            offsets[i] = offset;
+        }
+        return new Mp3SeekIndex(sampleRate, samplesPerFrame, framesPerEntry, totalFrames, length, offsets);
+    }
+
+    /**
+     * Counts bytes consumed, the scan needs absolute offsets.
+     */
+    private static class CountingStream {
+        private final InputStream in;
+        long position;
+        boolean ended;
+
+        CountingStream(InputStream in) {
+            this.in = in;
+        }
+
+        int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) position++;
+            return b;
+        }
+
+        int readInt() throws IOException {
+            int value = readIntOrEnd();
+            if (ended) throw new EOFException();
+            return value;
+        }
+
+        int readIntOrEnd() throws IOException {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                int b = read();
+                if (b < 0) {
+                    ended = true;
+                    return 0;
+                }
+                value = value << 8 | b;
+            }
+            return value;
+        }
+
+        void readFully(byte[] buffer, int offset, int count) throws IOException {
+            if (!readFullyOrEnd(buffer, offset, count)) throw new EOFException();
+        }
+
+        boolean readFullyOrEnd(byte[] buffer, int offset, int count) throws IOException {
+            while (count > 0) {
+                int read = in.read(buffer, offset, count);
+                if (read < 0) {
+                    ended = true;
+                    return false;
+                }
+                position += read;
+                offset += read;
+                count -= read;
+            }
+            return true;
+        }
+
+        void skipFully(long count) throws IOException {
+            while (count > 0) {
+                long skipped = in.skip(count);
+                if (skipped > 0) {
+                    position += skipped;
+                    count -= skipped;
+                } else if (read() >= 0) {
+                    count--;
+                } else {
+                    throw new EOFException();
+                }
+            }
+        }
+    }
+}
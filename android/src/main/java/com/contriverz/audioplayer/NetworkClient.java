@@ -0,0 +1,200 @@
+package com.contriverz.audioplayer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * The one HTTP client behind audio, downloads and artwork.
+ *
+ * Everything shares a connection pool, so range requests for the same track, prefetches
+ * and artwork from the same host reuse warm connections, and HTTPS servers that offer
+ * HTTP/2 get all requests multiplexed over a single one. Headers such as auth tokens
+ * are set per host and added to every request going there. Timeouts apply to all callers
+ * at once.
+ *
+ * Plain Java on purpose, no Android or ExoPlayer types.
+ */
+public class NetworkClient {
+
+    public static final int DEFAULT_CONNECT_TIMEOUT_MS = 10_000;
+    public static final int DEFAULT_READ_TIMEOUT_MS = 15_000;
+    /** Host key for headers sent to every host. */
+    public static final String ALL_HOSTS = "*";
+
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final long KEEP_ALIVE_MS = 5 * 60_000;
+
+    public interface Listener {
+        /** A new connection was set up, reused ones do not count. */
+        default void onConnectionOpened(String host) {}
+
+        /** From the start of a request until its response headers arrived. */
+        default void onFirstByte(String host, long ms) {}
+    }
+
+    private final Listener listener;
+    // Host to header name to value, guarded by itself
+    private final Map<String, Map<String, String>> headers = new HashMap<>();
+    private volatile OkHttpClient client;
+
+    public NetworkClient(Listener listener) {
+        this(listener, Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+    }
+
+    /**
+     * Protocols as OkHttp takes them, H2_PRIOR_KNOWLEDGE alone for cleartext HTTP/2.
+     */
+    NetworkClient(Listener listener, List<Protocol> protocols) {
+        this.listener = listener;
+        client = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MS, TimeUnit.MILLISECONDS))
+                .protocols(protocols)
+                .connectTimeout(DEFAULT_CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .readTimeout(DEFAULT_READ_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .addInterceptor(chain -> {
+                    Request request = chain.request();
+                    Map<String, String> added = headersFor(request.url().host());
+                    if (added.isEmpty()) return chain.proceed(request);
+
+                    Request.Builder builder = request.newBuilder();
+                    for (Map.Entry<String, String> header : added.entrySet()) {
+                        // A header set on the request itself wins
+                        if (request.header(header.getKey()) == null) {
+                            builder.header(header.getKey(), header.getValue());
+                        }
+                    }
+                    return chain.proceed(builder.build());
+                })
+                .eventListenerFactory(call -> new TimingListener())
+                .build();
+    }
+
+    /**
+     * New timeouts for every request from now on. The pool and its connections are kept.
+     */
+    public synchronized void configure(int connectTimeoutMs, int readTimeoutMs) {
+        client = client.newBuilder()
+                .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public int getConnectTimeoutMs() {
+        return client.connectTimeoutMillis();
+    }
+
+    public int getReadTimeoutMs() {
+        return client.readTimeoutMillis();
+    }
+
+    /**
+     * Replaces the headers sent to host, or to every host for ALL_HOSTS. Empty or null clears them.
+     */
+    public void setHeaders(String host, Map<String, String> values) {
+        synchronized (headers) {
+            if (values == null || values.isEmpty()) {
+                headers.remove(host);
+            } else {
+                headers.put(host, new LinkedHashMap<>(values));
+            }
+        }
+    }
+
+    /**
+     * Headers for a request to host, host specific ones over those for every host.
+     */
+    public Map<String, String> headersFor(String host) {
+        synchronized (headers) {
+            Map<String, String> all = headers.get(ALL_HOSTS);
+            Map<String, String> own = host != null ? headers.get(host) : null;
+            if (all == null && own == null) return Collections.emptyMap();
+
+            Map<String, String> merged = new LinkedHashMap<>();
+            if (all != null) merged.putAll(all);
+            if (own != null) merged.putAll(own);
+            return merged;
+        }
+    }
+
+    /**
+     * Always calls through the current client, so factories built once pick up configure().
+     */
+    public Call.Factory getCallFactory() {
+        return request -> client.newCall(request);
+    }
+
+    public Call newCall(Request request) {
+        return client.newCall(request);
+    }
+
+    /**
+     * GET from a byte offset, 0 for the whole resource. The caller closes the response.
+     */
+    public Response get(String url, long fromByte) throws IOException {
+        Request.Builder request = new Request.Builder().url(url);
+        if (fromByte > 0) {
+            request.header("Range", "bytes=" + fromByte + "-");
+        }
+        return client.newCall(request.build()).execute();
+    }
+
+    /**
+     * Drops idle connections, e.g. under memory pressure. Running requests are not affected.
+     */
+    public void evictIdle() {
+        client.connectionPool().evictAll();
+    }
+
+    public int getConnectionCount() {
+        return client.connectionPool().connectionCount();
+    }
+
+    /**
+     * Closes idle connections and lets the dispatcher's threads end. Requests already
+     * running finish, no new asynchronous ones are accepted.
+     */
+    public void release() {
+        evictIdle();
+        client.dispatcher().executorService().shutdown();
+    }
+
+    private class TimingListener extends EventListener {
+        private long startedAt;
+        private boolean reported;
+
+        @Override
+        public void callStart(Call call) {
+            startedAt = System.nanoTime();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+            listener.onConnectionOpened(call.request().url().host());
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            // Redirects and retries answer more than once, the first response is the one that counts
+            if (reported) return;
+            reported = true;
+            listener.onFirstByte(call.request().url().host(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.contriverz.audioplayer;
+
+import android.app.Activity;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.support.v4.media.session.MediaSessionCompat;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+import androidx.media.app.NotificationCompat.MediaStyle;
+
+/**
+ * Owns the media notification. PendingIntents and the builder are created once,
+ * and notify() is only called when something visible has changed since the last post.
+ *
+ * Position is not part of the notification text, the MediaStyle seekbar takes it
+ * from the MediaSession, so position ticks never need a repost.
+ */
+public class NotificationController {
+
+    private static final String TAG = "NotificationController";
+
+    private final Context context;
+    private final NotificationManager manager;
+    private final int notificationId;
+    private final NotificationCompat.Builder builder;
+
+    private final PendingIntent playIntent;
+    private final PendingIntent pauseIntent;
+    private final PendingIntent nextIntent;
+    private final PendingIntent prevIntent;
+
+    private final NotificationState lastPosted = new NotificationState();
+
+    public NotificationController(Context context, String channelId, int notificationId,
+                                  Class<? extends Activity> activityClass, MediaSessionCompat.Token sessionToken) {
+        this.context = context.getApplicationContext();
+        this.manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        this.notificationId = notificationId;
+
+        playIntent = broadcast(100, "ACTION_PLAY");
+        pauseIntent = broadcast(101, "ACTION_PAUSE");
+        nextIntent = broadcast(200, "ACTION_NEXT");
+        prevIntent = broadcast(300, "ACTION_PREV");
+
+        Intent contentIntent = new Intent(context, activityClass);
+        contentIntent.setFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        PendingIntent contentPendingIntent = PendingIntent.getActivity(context, 400, contentIntent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+
+        // Use MediaStyle for interactive seekbar
+        MediaStyle style = new MediaStyle();
+        style.setMediaSession(sessionToken);
+        style.setShowActionsInCompactView(0, 1, 2);
+
+        builder = new NotificationCompat.Builder(context, channelId)
+                .setSmallIcon(android.R.drawable.ic_media_play)
+                .setContentIntent(contentPendingIntent)
+                .setStyle(style)
+                .setOngoing(true)
+                .setShowWhen(false)
+                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
+                .setOnlyAlertOnce(true)
+                .setAutoCancel(false);
+    }
+
+    private PendingIntent broadcast(int requestCode, String action) {
+        Intent intent = new Intent(context, AudioPlayerPlugin.AudioPlayerReceiver.class).setAction(action);
+        return PendingIntent.getBroadcast(context, requestCode, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+
+    /**
+     * Posts the notification if title, artist, play state or artwork differ from
+     * what was last posted. Returns true when notify() was actually called.
+     */
+    public boolean update(AudioTrack track, boolean isPlaying, Bitmap artwork) {
+        String title = track.getTitle();
+        String artist = track.getArtist();
+
+        if (!lastPosted.differs(title, artist, isPlaying, artwork)) {
+            return false;
+        }
+
+        if (!lastPosted.isPosted() || isPlaying != lastPosted.isPlaying()) {
+            builder.clearActions()
+                    .addAction(android.R.drawable.ic_media_previous, "Previous", prevIntent)
+                    .addAction(isPlaying ? android.R.drawable.ic_media_pause : android.R.drawable.ic_media_play,
+                            isPlaying ? "Pause" : "Play", isPlaying ? pauseIntent : playIntent)
+                    .addAction(android.R.drawable.ic_media_next, "Next", nextIntent);
+        }
+
+        builder.setContentTitle(title)
+                .setContentText(artist)
+                .setLargeIcon(artwork);
+
+        Log.d(TAG, "📱 Notification: " + (isPlaying ? "PLAYING" : "PAUSED") + " - " + title);
+        if (manager != null) {
+            manager.notify(notificationId, builder.build());
+        }
+
+        lastPosted.set(title, artist, isPlaying, artwork);
+        return true;
+    }
+
+    /**
+     * A paused notification the user may swipe away, or back to a pinned one. Reposts if shown.
+     */
+    public void setOngoing(boolean ongoing) {
+        builder.setOngoing(ongoing);
+        if (lastPosted.isPosted() && manager != null) {
+            manager.notify(notificationId, builder.build());
+        }
+    }
+
+    public void cancel() {
+        if (manager != null) {
+            manager.cancel(notificationId);
+        }
+        lastPosted.reset();
+    }
+}
@@ -0,0 +1,45 @@
+package com.contriverz.audioplayer;
+
+import java.util.Objects;
+
+/**
+ * What the media notification last showed, so identical updates can be skipped.
+ */
+public class NotificationState {
+
+    private boolean posted;
+    private String title;
+    private String artist;
+    private boolean playing;
+    private Object artwork;
+
+    public boolean isPosted() {
+        return posted;
+    }
+
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    /**
+     * Whether posting this content would change anything visible.
+     * Artwork is compared by identity, a reloaded bitmap counts as a change.
+     */
+    public boolean differs(String title, String artist, boolean playing, Object artwork) {
+        return !posted || playing != this.playing || artwork != this.artwork
+                || !Objects.equals(title, this.title) || !Objects.equals(artist, this.artist);
+    }
+
+    public void set(String title, String artist, boolean playing, Object artwork) {
+        this.posted = true;
+        this.title = title;
+        this.artist = artist;
+        this.playing = playing;
+        this.artwork = artwork;
+    }
+
+    public void reset() {
+        posted = false;
+        artwork = null;
+    }
+}
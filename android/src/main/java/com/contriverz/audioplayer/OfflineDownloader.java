@@ -0,0 +1,488 @@
+package com.contriverz.audioplayer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Downloads tracks for offline playback, keyed by AudioTrack id.
+ *
+ * At most maxParallel downloads run at once, the rest wait in order. An interrupted
+ * download keeps its partial file and continues with a Range request the next time
+ * the track is enqueued. Completed files count against a quota, and when it is
+ * exceeded the least recently played unpinned downloads are evicted. Pinned ones
+ * are never evicted, only removed explicitly.
+ *
+ * getFile() and isDownloaded() never wait on the index lock, playback looks files
+ * up through them while index writes and deletes hold it.
+ *
+ * Plain Java on purpose, no Android or Capacitor types. Listener callbacks arrive on
+ * download threads.
+ */
+public class OfflineDownloader {
+
+    public static final int DEFAULT_MAX_PARALLEL = 2;
+    public static final long DEFAULT_QUOTA_BYTES = 1024L * 1024 * 1024;
+
+    public static final String STATE_QUEUED = "queued";
+    public static final String STATE_DOWNLOADING = "downloading";
+    public static final String STATE_COMPLETE = "complete";
+
+    private static final String INDEX_FILE = "index";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long PROGRESS_INTERVAL_MS = 250;
+
+    public interface Listener {
+        /** totalBytes is -1 when the server did not say. */
+        void onProgress(String id, long bytesDownloaded, long totalBytes);
+
+        void onComplete(String id, File file);
+
+        void onError(String id, String message);
+
+        /** A completed unpinned download was dropped to stay within the quota. */
+        void onEvicted(String id);
+    }
+
+    /**
+     * Snapshot of one download, queued, running or complete.
+     */
+    public static class Download {
+        public final String id;
+        public final String state;
+        public final long bytesDownloaded;
+        public final long totalBytes;
+        public final boolean pinned;
+
+        Download(String id, String state, long bytesDownloaded, long totalBytes, boolean pinned) {
+            this.id = id;
+            this.state = state;
+            this.bytesDownloaded = bytesDownloaded;
+            this.totalBytes = totalBytes;
+            this.pinned = pinned;
+        }
+    }
+
+    private static class Entry {
+        final String id;
+        final long bytes;
+        boolean pinned;
+        volatile long lastAccess;
+
+        Entry(String id, long bytes, boolean pinned, long lastAccess) {
+            this.id = id;
+            this.bytes = bytes;
+            this.pinned = pinned;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private class Task implements Runnable {
+        final String id;
+        final String url;
+        volatile boolean pinned;
+        volatile boolean cancelled;
+        volatile boolean started;
+        volatile long bytesDownloaded;
+        volatile long totalBytes = -1;
+        Future<?> future;
+
+        Task(String id, String url, boolean pinned) {
+            this.id = id;
+            this.url = url;
+            this.pinned = pinned;
+        }
+
+        @Override
+        public void run() {
+            started = true;
+            File part = partFor(id);
+            try {
+                long bytes = download(this, part);
+                if (!cancelled) complete(this, part, bytes);
+            } catch (Exception e) {
+                if (!cancelled) listener.onError(id, "Download failed: " + e.getMessage());
+            } finally {
+                synchronized (OfflineDownloader.this) {
+                    active.remove(id, this);
+                }
+            }
+        }
+    }
+
+    private final File dir;
+    private final NetworkClient network;
+    private final Listener listener;
+    private final ThreadPoolExecutor pool;
+
+    // Completed downloads in index order, guarded by this
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    // The same entries for lookups without the lock, changed together with entries
+    private final Map<String, Entry> completed = new ConcurrentHashMap<>();
+    private final Map<String, Task> active = new LinkedHashMap<>();
+    private long quotaBytes = DEFAULT_QUOTA_BYTES;
+    private final AtomicLong lastStamp = new AtomicLong();
+    private volatile boolean indexDirty;
+
+    public OfflineDownloader(File dir, NetworkClient network, Listener listener) {
+        this.dir = dir;
+        this.network = network;
+        this.listener = listener;
+        pool = new ThreadPoolExecutor(DEFAULT_MAX_PARALLEL, DEFAULT_MAX_PARALLEL, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>());
+        pool.allowCoreThreadTimeOut(true);
+        dir.mkdirs();
+        loadIndex();
+    }
+
+    public synchronized void configure(int maxParallel, long quotaBytes) {
+        int parallel = Math.max(1, maxParallel);
+        // Raise the maximum first, the pool rejects a core size above it
+        if (parallel > pool.getMaximumPoolSize()) {
+            pool.setMaximumPoolSize(parallel);
+            pool.setCorePoolSize(parallel);
+        } else {
+            pool.setCorePoolSize(parallel);
+            pool.setMaximumPoolSize(parallel);
+        }
+        this.quotaBytes = quotaBytes > 0 ? quotaBytes : DEFAULT_QUOTA_BYTES;
+        evict(null);
+        saveIndex();
+    }
+
+    public synchronized int getMaxParallel() {
+        return pool.getMaximumPoolSize();
+    }
+
+    public synchronized long getQuotaBytes() {
+        return quotaBytes;
+    }
+
+    /**
+     * Queues a download. A track that is already downloaded completes right away, one
+     * already queued or running is left as is. Enqueueing never unpins.
+     */
+    public synchronized void enqueue(String id, String url, boolean pinned) {
+        Entry entry = entries.get(id);
+        if (entry != null) {
+            if (pinned && !entry.pinned) {
+                entry.pinned = true;
+                saveIndex();
+            }
+            listener.onComplete(id, fileFor(id));
+            return;
+        }
+
+        Task task = active.get(id);
+        if (task != null) {
+            if (pinned) task.pinned = true;
+            return;
+        }
+
+        task = new Task(id, url, pinned);
+        active.put(id, task);
+        task.future = pool.submit(task);
+    }
+
+    /**
+     * Stops a queued or running download. The partial file is kept for a later resume.
+     */
+    public synchronized boolean cancel(String id) {
+        Task task = active.remove(id);
+        if (task == null) return false;
+        task.cancelled = true;
+        task.future.cancel(true);
+        return true;
+    }
+
+    /**
+     * Cancels and deletes a download, complete or partial.
+     */
+    public synchronized boolean remove(String id) {
+        boolean found = cancel(id);
+        Entry entry = entries.remove(id);
+        if (entry != null) {
+            completed.remove(id);
+            found = true;
+            fileFor(id).delete();
+            saveIndex();
+        }
+        File part = partFor(id);
+        if (part.exists()) {
+            found = true;
+            part.delete();
+        }
+        return found;
+    }
+
+    public synchronized boolean setPinned(String id, boolean pinned) {
+        Task task = active.get(id);
+        if (task != null) {
+            task.pinned = pinned;
+            return true;
+        }
+
+        Entry entry = entries.get(id);
+        if (entry == null) return false;
+        entry.pinned = pinned;
+        if (!pinned) evict(null);
+        saveIndex();
+        return true;
+    }
+
+    /**
+     * The downloaded file, or null. Counts as a use for LRU eviction. Answers from the
+     * index without touching the filesystem.
+     */
+    public File getFile(String id) {
+        Entry entry = completed.get(id);
+        if (entry == null) return null;
+        entry.lastAccess = stamp();
+        indexDirty = true;
+        return fileFor(id);
+    }
+
+    public boolean isDownloaded(String id) {
+        return completed.containsKey(id);
+    }
+
+    public synchronized long getUsedBytes() {
+        long used = 0;
+        for (Entry entry : entries.values()) {
+            used += entry.bytes;
+        }
+        return used;
+    }
+
+    /**
+     * Running and queued downloads first, in submission order, then completed ones.
+     */
+    public synchronized List<Download> getDownloads() {
+        List<Download> downloads = new ArrayList<>(active.size() + entries.size());
+        for (Task task : active.values()) {
+            downloads.add(new Download(task.id, task.started ? STATE_DOWNLOADING : STATE_QUEUED,
+                    task.bytesDownloaded, task.totalBytes, task.pinned));
+        }
+        for (Entry entry : entries.values()) {
+            downloads.add(new Download(entry.id, STATE_COMPLETE, entry.bytes, entry.bytes, entry.pinned));
+        }
+        return downloads;
+    }
+
+    public synchronized void release() {
+        for (Task task : active.values()) {
+            task.cancelled = true;
+        }
+        active.clear();
+        pool.shutdownNow();
+        if (indexDirty) saveIndex();
+    }
+
+    private long download(Task task, File part) throws IOException {
+        long offset = part.length();
+        try (Response response = network.get(task.url, offset)) {
+            int status = response.code();
+            if (status == 416 && offset > 0) {
+                // The partial file already holds everything
+                return offset;
+            }
+
+            boolean append;
+            if (status == HttpURLConnection.HTTP_PARTIAL) {
+                append = true;
+            } else if (status == HttpURLConnection.HTTP_OK) {
+                // Range ignored, start over
+                append = false;
+                offset = 0;
+            } else {
+                throw new IOException("HTTP " + status);
+            }
+
+            ResponseBody body = response.body();
+            if (body == null) throw new IOException("HTTP " + status + " without a body");
+            long length = body.contentLength();
+            long total = length >= 0 ? offset + length : -1;
+            task.totalBytes = total;
+
+            long downloaded = offset;
+            try (InputStream in = body.byteStream();
+                 OutputStream out = new FileOutputStream(part, append)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                long lastProgress = 0;
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    if (task.cancelled) throw new InterruptedIOException("Download cancelled");
+
+                    out.write(buffer, 0, read);
+                    downloaded += read;
+                    task.bytesDownloaded = downloaded;
+
+                    long now = System.currentTimeMillis();
+                    if (now - lastProgress >= PROGRESS_INTERVAL_MS) {
+                        lastProgress = now;
+                        listener.onProgress(task.id, downloaded, total);
+                    }
+                }
+            }
+
+            if (total >= 0 && downloaded < total) {
+                throw new IOException("Connection closed after " + downloaded + " of " + total + " bytes");
+            }
+            return downloaded;
+        }
+    }
+
+    private void complete(Task task, File part, long bytes) throws IOException {
+        File file = fileFor(task.id);
+        if (!part.renameTo(file)) {
+            throw new IOException("Cannot move " + part.getName() + " into place");
+        }
+
+        synchronized (this) {
+            if (task.cancelled) {
+                file.delete();
+                return;
+            }
+            Entry entry = new Entry(task.id, bytes, task.pinned, stamp());
+            entries.put(task.id, entry);
+            completed.put(task.id, entry);
+            evict(task.id);
+            saveIndex();
+        }
+        listener.onProgress(task.id, bytes, bytes);
+        listener.onComplete(task.id, file);
+    }
+
+    /**
+     * Drops least recently used unpinned downloads until the quota holds. keep is spared,
+     * so a download that was just asked for is not evicted by its own completion.
+     */
+    private void evict(String keep) {
+        long used = getUsedBytes();
+        while (used > quotaBytes) {
+            Entry oldest = null;
+            for (Entry entry : entries.values()) {
+                if (entry.pinned || entry.id.equals(keep)) continue;
+                if (oldest == null || entry.lastAccess < oldest.lastAccess) {
+                    oldest = entry;
+                }
+            }
+            if (oldest == null) return;
+
+            entries.remove(oldest.id);
+            completed.remove(oldest.id);
+            fileFor(oldest.id).delete();
+            used -= oldest.bytes;
+            listener.onEvicted(oldest.id);
+        }
+    }
+
+    // Strictly increasing, so LRU order survives several uses within one millisecond
+    private long stamp() {
+        long now = System.currentTimeMillis();
+        return lastStamp.updateAndGet(last -> Math.max(now, last + 1));
+    }
+
+    private File fileFor(String id) {
+        return new File(dir, hash(id) + ".audio");
+    }
+
+    private File partFor(String id) {
+        return new File(dir, hash(id) + ".part");
+    }
+
+    private static String hash(String id) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(id.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * One line per download: id, bytes, pinned, last access. Entries whose file is gone are dropped.
+     */
+    private void loadIndex() {
+        File index = new File(dir, INDEX_FILE);
+        if (!index.exists()) return;
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(index), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length != 4) continue;
+
+                String id = URLDecoder.decode(fields[0], "UTF-8");
+                if (!fileFor(id).exists()) continue;
+                long lastAccess = Long.parseLong(fields[3]);
+                Entry entry = new Entry(id, Long.parseLong(fields[1]), "1".equals(fields[2]), lastAccess);
+                entries.put(id, entry);
+                completed.put(id, entry);
+                lastStamp.accumulateAndGet(lastAccess, Math::max);
+            }
+        } catch (IOException | RuntimeException e) {
+            // A damaged index only loses bookkeeping, tracks are downloaded again when asked for
+            entries.clear();
+            completed.clear();
+        }
+    }
+
+    private void saveIndex() {
+        File index = new File(dir, INDEX_FILE);
+        File temp = new File(dir, INDEX_FILE + ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+            for (Entry entry : entries.values()) {
+                writer.write(encode(entry.id) + "\t" + entry.bytes + "\t" + (entry.pinned ? "1" : "0")
+                        + "\t" + entry.lastAccess + "\n");
+            }
+        } catch (IOException e) {
+            return;
+        }
+        if (temp.renameTo(index)) {
+            indexDirty = false;
+        }
+    }
+
+    private static String encode(String id) {
+        try {
+            return URLEncoder.encode(id, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,444 @@
+package com.contriverz.audioplayer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Queue and transition state machine behind the plugin.
+ *
+ * Owns the queue, the current index, repeat and shuffle, and drives a PlayerBackend
+ * that only ever holds the current and the next track. Plain Java on purpose, so the
+ * whole thing runs on a JVM against FakePlayerBackend.
+ *
+ * Not thread-safe, call it from the thread the backend delivers its callbacks on.
+ */
+public class PlaybackEngine implements PlayerBackend.Listener {
+
+    public static final String REPEAT_NONE = "none";
+    public static final String REPEAT_ONE = "one";
+    public static final String REPEAT_ALL = "all";
+
+    public interface Listener {
+        /** A new track became current, automatic when the backend advanced by itself. */
+        default void onTrackChanged(AudioTrack track, boolean automatic) {}
+
+        /** The last track in play order finished. */
+        default void onQueueEnded() {}
+
+        /** next() or previous() had nowhere to go, direction is "next" or "previous". */
+        default void onNoTrack(String direction) {}
+
+        default void onPlaybackStateChanged(int state) {}
+
+        default void onIsPlayingChanged(boolean playing) {}
+
+        default void onSeek() {}
+
+        default void onRateChanged(float rate) {}
+
+        default void onError(String message) {}
+    }
+
+    /**
+     * What it takes to pick playback up again on a new engine and backend: the queue with
+     * its shuffle order, the current track, repeat mode, rate and position. The queue is
+     * handed over, not copied, so the engine it came from must not be used afterwards.
+     */
+    public static class Snapshot {
+        private final TrackQueue queue;
+        private final int currentIndex;
+        private final String repeatMode;
+        private final float rate;
+        private final long positionMs;
+
+        Snapshot(TrackQueue queue, int currentIndex, String repeatMode, float rate, long positionMs) {
+            this.queue = queue;
+            this.currentIndex = currentIndex;
+            this.repeatMode = repeatMode;
+            this.rate = rate;
+            this.positionMs = positionMs;
+        }
+
+        public TrackQueue getQueue() {
+            return queue;
+        }
+
+        /**
+         * Position of the current track among the queued ones, as JS counts it.
+         */
+        public int getCurrentIndex() {
+            return queue.isEmpty() ? 0 : queue.positionOf(currentIndex);
+        }
+
+        public AudioTrack getCurrentTrack() {
+            return queue.isEmpty() ? null : queue.get(currentIndex);
+        }
+
+        public long getPositionMs() {
+            return positionMs;
+        }
+    }
+
+    private static final Listener NO_LISTENER = new Listener() {};
+
+    private final PlayerBackend backend;
+    private TrackQueue queue = new TrackQueue();
+    private final Random random;
+    private Listener listener = NO_LISTENER;
+
+    // Queue index of the current track, see TrackQueue for what an index is
+    private int currentIndex = 0;
+    // Held so compact storage does not build a new view on every position tick
+    private AudioTrack currentTrack;
+    private String repeatMode = REPEAT_NONE;
+
+    public PlaybackEngine(PlayerBackend backend) {
+        this(backend, System.nanoTime());
+    }
+
+    public PlaybackEngine(PlayerBackend backend, long shuffleSeed) {
+        this.backend = backend;
+        this.random = new Random(shuffleSeed);
+        backend.setListener(this);
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener != null ? listener : NO_LISTENER;
+    }
+
+    public PlayerBackend getBackend() {
+        return backend;
+    }
+
+    // Queue
+
+    /**
+     * Replaces the queue and loads startIndex, out of range falls back to the first track.
+     */
+    public void setQueue(List<AudioTrack> tracks, int startIndex) {
+        queue.clear();
+        queue.addAll(tracks);
+        if (queue.isEmpty()) {
+            clear();
+            return;
+        }
+        currentIndex = startIndex >= 0 && startIndex < queue.size() ? startIndex : 0;
+        if (queue.isShuffled()) {
+            queue.setShuffle(true, random.nextLong(), currentIndex);
+        }
+        loadCurrent();
+    }
+
+    public void addTracks(List<AudioTrack> tracks) {
+        if (tracks.isEmpty()) return;
+
+        boolean wasEmpty = queue.isEmpty();
+        int first = queue.addAll(tracks, currentIndex);
+
+        if (wasEmpty) {
+            currentIndex = first;
+            loadCurrent();
+        } else {
+            syncNext();
+        }
+    }
+
+    /**
+     * Removes the track with this id, returns false when it is not in the queue.
+     * Removing the current track moves on to the one after it in play order. When there is
+     * none and repeat is not "all", playback stops on the one before it and the queue has ended.
+     */
+    public boolean removeTrack(String trackId) {
+        int index = queue.indexOf(trackId);
+        if (index < 0) return false;
+
+        if (queue.size() == 1) {
+            clear();
+            return true;
+        }
+
+        if (index == currentIndex) {
+            int next = nextIndex(index);
+            if (next >= 0) {
+                // Whatever followed in play order takes the removed track's place
+                currentIndex = queue.removeKeeping(index, next);
+                loadCurrent();
+            } else {
+                // Same as playing past the last track, nothing wraps around
+                currentIndex = queue.removeKeeping(index, queue.previousIndex(index, false));
+                backend.pause();
+                loadCurrent();
+                listener.onQueueEnded();
+            }
+        } else {
+            // Removal may have compacted the queue, the current index moves with it
+            currentIndex = queue.removeKeeping(index, currentIndex);
+            syncNext();
+        }
+        return true;
+    }
+
+    public void clear() {
+        backend.stop();
+        queue.clear();
+        currentIndex = 0;
+        currentTrack = null;
+    }
+
+    public TrackQueue getQueue() {
+        return queue;
+    }
+
+    /**
+     * Position of the current track among the remaining ones, as JS counts it.
+     */
+    public int getCurrentIndex() {
+        return queue.isEmpty() ? 0 : queue.positionOf(currentIndex);
+    }
+
+    /**
+     * The current track, or null when the queue is empty.
+     */
+    public AudioTrack getCurrentTrack() {
+        return currentTrack;
+    }
+
+    /**
+     * Up to count tracks that will play after the current one, in play order.
+     */
+    public List<AudioTrack> upcoming(int count) {
+        List<AudioTrack> upcoming = new ArrayList<>(Math.min(count, queue.size()));
+        int index = currentIndex;
+        while (upcoming.size() < count) {
+            index = nextIndex(index);
+            if (index < 0 || index == currentIndex) break;
+            upcoming.add(queue.get(index));
+        }
+        return upcoming;
+    }
+
+    // Navigation
+
+    /**
+     * Moves to the next track in play order, returns false when there is none.
+     */
+    public boolean next() {
+        if (queue.isEmpty()) {
+            listener.onNoTrack("next");
+            return false;
+        }
+        int target = nextIndex(currentIndex);
+        if (target < 0) {
+            listener.onNoTrack("next");
+            return false;
+        }
+        currentIndex = target;
+        loadCurrent();
+        return true;
+    }
+
+    public boolean previous() {
+        if (queue.isEmpty()) {
+            listener.onNoTrack("previous");
+            return false;
+        }
+        int target = previousIndex(currentIndex);
+        if (target < 0) {
+            listener.onNoTrack("previous");
+            return false;
+        }
+        currentIndex = target;
+        loadCurrent();
+        return true;
+    }
+
+    /**
+     * Jumps to the track with this id, returns false when it is not in the queue.
+     */
+    public boolean skipTo(String trackId) {
+        int index = queue.indexOf(trackId);
+        if (index < 0) return false;
+        currentIndex = index;
+        loadCurrent();
+        return true;
+    }
+
+    // Modes
+
+    public void setRepeatMode(String mode) {
+        repeatMode = mode;
+        backend.setLooping(REPEAT_ONE.equals(mode));
+        syncNext();
+    }
+
+    public String getRepeatMode() {
+        return repeatMode;
+    }
+
+    public void setShuffle(boolean enabled) {
+        if (enabled == queue.isShuffled()) return;
+        setShuffle(enabled, random.nextLong());
+    }
+
+    /**
+     * Turns shuffle on with a permutation from this seed, the same seed and queue give the same order.
+     */
+    public void setShuffle(boolean enabled, long seed) {
+        if (!enabled && !queue.isShuffled()) return;
+        queue.setShuffle(enabled, seed, currentIndex);
+        syncNext();
+    }
+
+    /**
+     * Draws a new order for the tracks still to play, for a queue that was appended in
+     * several steps while shuffled. Does nothing when not shuffled.
+     */
+    public void reshuffleUpcoming() {
+        if (!queue.isShuffled()) return;
+        queue.shuffleAfter(currentIndex, random.nextLong());
+        syncNext();
+    }
+
+    public boolean isShuffle() {
+        return queue.isShuffled();
+    }
+
+    // Transport, forwarded to the backend
+
+    public void play() {
+        backend.play();
+    }
+
+    public void pause() {
+        backend.pause();
+    }
+
+    public void stop() {
+        backend.stop();
+    }
+
+    public void seekTo(long positionMs) {
+        backend.seekTo(positionMs);
+    }
+
+    public void setScrubbing(boolean scrubbing) {
+        backend.setScrubbing(scrubbing);
+    }
+
+    public void setRate(float rate) {
+        backend.setRate(rate);
+    }
+
+    public void release() {
+        backend.release();
+    }
+
+    // Snapshots
+
+    public Snapshot snapshot() {
+        return new Snapshot(queue, currentIndex, repeatMode, backend.getRate(), backend.getPositionMs());
+    }
+
+    /**
+     * Takes over a snapshot from another engine, the same track is loaded paused at the
+     * same position. No track change is reported, from the outside nothing changed.
+     */
+    public void restore(Snapshot snapshot) {
+        queue = snapshot.queue;
+        repeatMode = snapshot.repeatMode;
+        backend.setLooping(REPEAT_ONE.equals(repeatMode));
+        backend.setRate(snapshot.rate);
+
+        if (queue.isEmpty()) {
+            currentIndex = 0;
+            currentTrack = null;
+            return;
+        }
+        currentIndex = snapshot.currentIndex;
+        currentTrack = queue.get(currentIndex);
+        backend.load(currentTrack, peekNext(), snapshot.positionMs);
+    }
+
+    /**
+     * Swaps in a queue built elsewhere, for instance off the playback thread, that holds the
+     * current track at currentIndex. Playback carries on untouched, only what follows changes.
+     */
+    public void adoptQueue(TrackQueue queue, int currentIndex) {
+        this.queue = queue;
+        this.currentIndex = currentIndex;
+        currentTrack = queue.get(currentIndex);
+        syncNext();
+    }
+
+    // Backend callbacks
+
+    @Override
+    public void onAutoAdvance() {
+        int target = nextIndex(currentIndex);
+        if (target < 0) return;
+        currentIndex = target;
+        currentTrack = queue.get(currentIndex);
+        syncNext();
+        listener.onTrackChanged(currentTrack, true);
+    }
+
+    @Override
+    public void onEnded() {
+        listener.onQueueEnded();
+    }
+
+    @Override
+    public void onPlaybackStateChanged(int state) {
+        listener.onPlaybackStateChanged(state);
+    }
+
+    @Override
+    public void onIsPlayingChanged(boolean playing) {
+        listener.onIsPlayingChanged(playing);
+    }
+
+    @Override
+    public void onSeek() {
+        listener.onSeek();
+    }
+
+    @Override
+    public void onRateChanged(float rate) {
+        listener.onRateChanged(rate);
+    }
+
+    @Override
+    public void onError(String message) {
+        listener.onError(message);
+    }
+
+    // Internals
+
+    private void loadCurrent() {
+        currentTrack = queue.get(currentIndex);
+        backend.load(currentTrack, peekNext(), 0);
+        listener.onTrackChanged(currentTrack, false);
+    }
+
+    private void syncNext() {
+        if (queue.isEmpty()) return;
+        backend.setNext(peekNext());
+    }
+
+    private AudioTrack peekNext() {
+        int next = nextIndex(currentIndex);
+        return next >= 0 ? queue.get(next) : null;
+    }
+
+    /**
+     * Queue index after this one in play order, -1 at the end unless repeating all.
+     */
+    private int nextIndex(int index) {
+        return queue.nextIndex(index, REPEAT_ALL.equals(repeatMode));
+    }
+
+    private int previousIndex(int index) {
+        return queue.previousIndex(index, REPEAT_ALL.equals(repeatMode));
+    }
+}
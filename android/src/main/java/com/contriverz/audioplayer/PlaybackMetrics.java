@@ -0,0 +1,273 @@
+package com.contriverz.audioplayer;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+import com.google.android.exoplayer2.source.LoadEventInfo;
+import com.google.android.exoplayer2.source.MediaLoadData;
+
+/**
+ * Playback quality-of-experience counters fed from ExoPlayer's analytics callbacks.
+ *
+ * Per track it tracks time to READY, time to first audio, rebuffers and bytes
+ * loaded, and rolls them into histograms when the track changes. Everything is
+ * primitive fields and pre-allocated histograms, only getMetrics() allocates.
+ */
+public class PlaybackMetrics implements AnalyticsListener, NetworkClient.Listener {
+
+    private static final long LATE_TICK_MS = 50;
+
+    private final MetricsHistogram timeToReady = new MetricsHistogram();
+    private final MetricsHistogram timeToFirstAudio = new MetricsHistogram();
+    private final MetricsHistogram rebufferDuration = new MetricsHistogram();
+    private final MetricsHistogram tickLateness = new MetricsHistogram();
+    private final MetricsHistogram resumeLatency = new MetricsHistogram();
+    private final MetricsHistogram timeToFirstByte = new MetricsHistogram();
+
+    // Current track
+    private String trackId;
+    private long startedAt;
+    private long readyMs = -1;
+    private long firstAudioMs = -1;
+    private int rebufferCount;
+    private long rebufferMs;
+    private long rebufferStartedAt = -1;
+    private long bytesLoaded;
+    private boolean wasReady;
+    // Set while a player rebuilt from a snapshot is on its way to READY
+    private long resumeStartedAt = -1;
+
+    // Totals since the last reset
+    private long tracks;
+    private long totalRebuffers;
+    private long totalBytesLoaded;
+    private long bridgeEvents;
+    private long droppedBridgeEvents;
+    private long lateTicks;
+    private long driftAnchors;
+    private long playerReleases;
+    private long connectionsOpened;
+
+    /**
+     * Starts measuring a new track, called when it is prepared or transitioned to.
+     */
+    public synchronized void onTrackStart(String trackId) {
+        finishTrack();
+        // Whatever the rebuilt player was resuming got replaced, this is a start of its own
+        resumeStartedAt = -1;
+        this.trackId = trackId;
+        startedAt = SystemClock.elapsedRealtime();
+        readyMs = -1;
+        firstAudioMs = -1;
+        rebufferCount = 0;
+        rebufferMs = 0;
+        rebufferStartedAt = -1;
+        bytesLoaded = 0;
+        wasReady = false;
+    }
+
+    private void finishTrack() {
+        if (trackId == null) return;
+        if (rebufferStartedAt >= 0) {
+            endRebuffer(SystemClock.elapsedRealtime());
+        }
+        tracks++;
+        trackId = null;
+    }
+
+    /**
+     * Counts an event sent over the bridge, dropped when JS had no listener for it.
+     */
+    public synchronized void onBridgeEvent(boolean delivered) {
+        bridgeEvents++;
+        if (!delivered) droppedBridgeEvents++;
+    }
+
+    /**
+     * Records how far past its scheduled time a position tick ran.
+     */
+    public synchronized void onTick(long latenessMs) {
+        tickLateness.record(Math.max(0, latenessMs));
+        if (latenessMs > LATE_TICK_MS) lateTicks++;
+    }
+
+    /**
+     * Counts a position anchor sent because JS's extrapolated position had drifted.
+     */
+    public synchronized void onDriftAnchor() {
+        driftAnchors++;
+    }
+
+    /**
+     * Counts a player released while paused, an open rebuffer ends with it.
+     */
+    public synchronized void onPlayerReleased() {
+        playerReleases++;
+        if (rebufferStartedAt >= 0) {
+            endRebuffer(SystemClock.elapsedRealtime());
+        }
+    }
+
+    /**
+     * Starts timing a released player being rebuilt, until it is READY at the saved position.
+     * A track started before then ends the timing, its startup counts as time to ready.
+     */
+    public synchronized void onResumeStart() {
+        resumeStartedAt = SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public synchronized void onConnectionOpened(String host) {
+        connectionsOpened++;
+    }
+
+    @Override
+    public synchronized void onFirstByte(String host, long ms) {
+        timeToFirstByte.record(ms);
+    }
+
+    @Override
+    public synchronized void onPlaybackStateChanged(@NonNull EventTime eventTime, int state) {
+        long now = SystemClock.elapsedRealtime();
+        if (resumeStartedAt >= 0) {
+            // The rebuilt player's first buffering is the resume itself, not a rebuffer
+            if (state == Player.STATE_READY) {
+                resumeLatency.record(now - resumeStartedAt);
+                resumeStartedAt = -1;
+            }
+            return;
+        }
+        if (trackId == null) return;
+
+        if (state == Player.STATE_READY) {
+            if (!wasReady) {
+                wasReady = true;
+                readyMs = now - startedAt;
+                timeToReady.record(readyMs);
+            }
+            if (rebufferStartedAt >= 0) {
+                endRebuffer(now);
+            }
+        } else if (state == Player.STATE_BUFFERING && wasReady && rebufferStartedAt < 0) {
+            rebufferStartedAt = now;
+            rebufferCount++;
+            totalRebuffers++;
+        }
+    }
+
+    private void endRebuffer(long now) {
+        long duration = now - rebufferStartedAt;
+        rebufferMs += duration;
+        rebufferDuration.record(duration);
+        rebufferStartedAt = -1;
+    }
+
+    @Override
+    public synchronized void onAudioPositionAdvancing(@NonNull EventTime eventTime, long playoutStartSystemTimeMs) {
+        if (trackId == null || firstAudioMs >= 0) return;
+        firstAudioMs = SystemClock.elapsedRealtime() - startedAt;
+        timeToFirstAudio.record(firstAudioMs);
+    }
+
+    @Override
+    public synchronized void onLoadCompleted(@NonNull EventTime eventTime, @NonNull LoadEventInfo loadEventInfo,
+                                             @NonNull MediaLoadData mediaLoadData) {
+        bytesLoaded += loadEventInfo.bytesLoaded;
+        totalBytesLoaded += loadEventInfo.bytesLoaded;
+    }
+
+    @Override
+    public void onMediaItemTransition(@NonNull EventTime eventTime, MediaItem mediaItem, int reason) {
+        if (mediaItem == null || reason == Player.MEDIA_ITEM_TRANSITION_REASON_PLAYLIST_CHANGED) return;
+
+        synchronized (this) {
+            onTrackStart(mediaItem.mediaId);
+            if (reason == Player.MEDIA_ITEM_TRANSITION_REASON_AUTO || reason == Player.MEDIA_ITEM_TRANSITION_REASON_REPEAT) {
+                // Gapless hand-over, there is no startup to measure
+                wasReady = true;
+                readyMs = 0;
+                firstAudioMs = 0;
+            }
+        }
+    }
+
+    public synchronized void reset() {
+        timeToReady.reset();
+        timeToFirstAudio.reset();
+        rebufferDuration.reset();
+        tickLateness.reset();
+        resumeLatency.reset();
+        timeToFirstByte.reset();
+        tracks = 0;
+        totalRebuffers = 0;
+        totalBytesLoaded = 0;
+        bridgeEvents = 0;
+        droppedBridgeEvents = 0;
+        lateTicks = 0;
+        driftAnchors = 0;
+        playerReleases = 0;
+        connectionsOpened = 0;
+    }
+
+    public synchronized JSObject toJSObject() {
+        JSObject current = new JSObject();
+        current.put("trackId", trackId);
+        current.put("timeToReadyMs", readyMs);
+        current.put("timeToFirstAudioMs", firstAudioMs);
+        current.put("rebufferCount", rebufferCount);
+        current.put("rebufferMs", rebufferMs);
+        current.put("bytesLoaded", bytesLoaded);
+
+        JSObject totals = new JSObject();
+        totals.put("tracks", tracks);
+        totals.put("rebuffers", totalRebuffers);
+        totals.put("bytesLoaded", totalBytesLoaded);
+        totals.put("bridgeEvents", bridgeEvents);
+        totals.put("droppedBridgeEvents", droppedBridgeEvents);
+        totals.put("lateTicks", lateTicks);
+        totals.put("driftAnchors", driftAnchors);
+        totals.put("playerReleases", playerReleases);
+        totals.put("connectionsOpened", connectionsOpened);
+
+        JSObject histograms = new JSObject();
+        histograms.put("timeToReady", histogramToJSObject(timeToReady));
+        histograms.put("timeToFirstAudio", histogramToJSObject(timeToFirstAudio));
+        histograms.put("rebufferDuration", histogramToJSObject(rebufferDuration));
+        histograms.put("tickLateness", histogramToJSObject(tickLateness));
+        histograms.put("resumeLatency", histogramToJSObject(resumeLatency));
+        histograms.put("timeToFirstByte", histogramToJSObject(timeToFirstByte));
+
+        JSObject result = new JSObject();
+        result.put("current", current);
+        result.put("totals", totals);
+        result.put("histograms", histograms);
+        return result;
+    }
+
+    private static JSObject histogramToJSObject(MetricsHistogram histogram) {
+        JSArray bounds = new JSArray();
+        for (long bound : MetricsHistogram.getBoundsMs()) {
+            bounds.put(bound);
+        }
+        JSArray counts = new JSArray();
+        for (long count : histogram.getCounts()) {
+            counts.put(count);
+        }
+
+        JSObject data = new JSObject();
+        data.put("count", histogram.getCount());
+        data.put("meanMs", histogram.getMeanMs());
+        data.put("p50Ms", histogram.getPercentileMs(50));
+        data.put("p95Ms", histogram.getPercentileMs(95));
+        data.put("maxMs", histogram.getMaxMs());
+        data.put("boundsMs", bounds);
+        data.put("counts", counts);
+        return data;
+    }
+}
@@ -0,0 +1,89 @@
+package com.contriverz.audioplayer;
+
+/**
+ * What PlaybackEngine needs from an actual player.
+ *
+ * A backend only ever holds the current track and the one queued after it, the
+ * engine owns the queue, repeat and shuffle and tells the backend what comes next.
+ * Holding the next track lets the backend hand over to it without a gap.
+ *
+ * Plain Java on purpose, no Android or Capacitor types.
+ */
+public interface PlayerBackend {
+
+    int STATE_IDLE = 1;
+    int STATE_BUFFERING = 2;
+    int STATE_READY = 3;
+    int STATE_ENDED = 4;
+
+    interface Listener {
+        /** The backend moved on to the queued next track by itself. */
+        void onAutoAdvance();
+
+        /** The current track finished and nothing was queued after it. */
+        void onEnded();
+
+        void onPlaybackStateChanged(int state);
+
+        void onIsPlayingChanged(boolean playing);
+
+        /** A seek has been applied, position jumped. */
+        void onSeek();
+
+        void onRateChanged(float rate);
+
+        void onError(String message);
+    }
+
+    void setListener(Listener listener);
+
+    /**
+     * Replaces whatever is loaded with track at positionMs, with next queued after it.
+     * next may be null. Keeps the current play/pause intent.
+     */
+    void load(AudioTrack track, AudioTrack next, long positionMs);
+
+    /**
+     * Replaces the track queued after the current one, null to queue nothing.
+     */
+    void setNext(AudioTrack next);
+
+    /**
+     * Loops the current track instead of advancing when it ends.
+     */
+    void setLooping(boolean looping);
+
+    void play();
+
+    void pause();
+
+    void stop();
+
+    void seekTo(long positionMs);
+
+    /** While set, seeks may land on the nearest sync point instead of the exact position. */
+    void setScrubbing(boolean scrubbing);
+
+    void setRate(float rate);
+
+    float getRate();
+
+    /** 0 to 1, applied on top of the system volume. */
+    void setVolume(float volume);
+
+    float getVolume();
+
+    /** True when playback was asked for, even while still buffering. */
+    boolean getPlayWhenReady();
+
+    boolean isPlaying();
+
+    long getPositionMs();
+
+    /** Duration of the current track, or -1 when unknown. */
+    long getDurationMs();
+
+    long getBufferedPositionMs();
+
+    void release();
+}
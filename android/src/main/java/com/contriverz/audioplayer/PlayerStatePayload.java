@@ -0,0 +1,29 @@
+package com.contriverz.audioplayer;
+
+import com.getcapacitor.JSObject;
+
+/**
+ * Builds the event payloads sent to JS on every position update.
+ */
+public final class PlayerStatePayload {
+
+    private PlayerStatePayload() {}
+
+    public static JSObject playerState(String trackId, boolean isPlaying, long positionMs, long durationMs) {
+        JSObject data = new JSObject();
+        data.put("isPlaying", isPlaying);
+        data.put("position", positionMs / 1000.0);
+        data.put("duration", durationMs > 0 ? durationMs / 1000.0 : 0);
+        data.put("trackId", trackId);
+        return data;
+    }
+
+    public static JSObject anchor(String trackId, boolean isPlaying, long positionMs, long durationMs,
+                                  float rate, long timestamp, String reason) {
+        JSObject data = playerState(trackId, isPlaying, positionMs, durationMs);
+        data.put("playbackRate", rate);
+        data.put("timestamp", timestamp);
+        data.put("reason", reason);
+        return data;
+    }
+}
@@ -0,0 +1,79 @@
+package com.contriverz.audioplayer;
+
+/**
+ * Keeps the last position anchor sent to JS and decides when a new one is due
+ * in anchor mode. JS extrapolates position * rate from the anchor on its own,
+ * so native only has to speak up on discontinuities, on a low-rate heartbeat,
+ * or when the real position has drifted from what JS would compute.
+ *
+ * Plain Java on purpose, no Android or Capacitor types.
+ */
+public class PositionAnchorTracker {
+
+    public static final String REASON_HEARTBEAT = "heartbeat";
+    public static final String REASON_DRIFT = "drift";
+
+    public static final long DEFAULT_HEARTBEAT_MS = 15_000;
+    public static final long DRIFT_TOLERANCE_MS = 250;
+    // Ticks between heartbeats only compare positions, they emit nothing unless drifted
+    public static final long DRIFT_CHECK_MS = 2_000;
+
+    private long heartbeatMs = DEFAULT_HEARTBEAT_MS;
+
+    private boolean hasAnchor;
+    private long anchorTimeMs;
+    private long anchorPositionMs;
+    private float anchorRate;
+    private boolean anchorPlaying;
+
+    public long getHeartbeatMs() {
+        return heartbeatMs;
+    }
+
+    public void setHeartbeatMs(long heartbeatMs) {
+        this.heartbeatMs = Math.max(1000, heartbeatMs);
+    }
+
+    /**
+     * Records that an anchor with these values has just been sent.
+     */
+    public void markAnchor(long nowMs, long positionMs, boolean playing, float rate) {
+        hasAnchor = true;
+        anchorTimeMs = nowMs;
+        anchorPositionMs = positionMs;
+        anchorPlaying = playing;
+        anchorRate = rate;
+    }
+
+    public void reset() {
+        hasAnchor = false;
+    }
+
+    /**
+     * Position JS is expected to show at nowMs given the last anchor.
+     */
+    public long expectedPositionMs(long nowMs) {
+        if (!anchorPlaying) return anchorPositionMs;
+        return anchorPositionMs + (long) ((nowMs - anchorTimeMs) * anchorRate);
+    }
+
+    /**
+     * Delay until the next tick, the drift check interval or sooner when the heartbeat falls due first.
+     */
+    public long nextTickDelayMs(long nowMs) {
+        if (!hasAnchor) return DRIFT_CHECK_MS;
+        long untilHeartbeat = anchorTimeMs + heartbeatMs - nowMs;
+        return Math.max(1, Math.min(DRIFT_CHECK_MS, untilHeartbeat));
+    }
+
+    /**
+     * Called on each tick, returns the reason a new anchor should be sent, REASON_DRIFT when
+     * the position strayed past the tolerance, or null when none is due.
+     */
+    public String anchorDue(long nowMs, long positionMs, boolean playing, float rate) {
+        if (!hasAnchor || playing != anchorPlaying || rate != anchorRate) return REASON_HEARTBEAT;
+        if (nowMs - anchorTimeMs >= heartbeatMs) return REASON_HEARTBEAT;
+        if (Math.abs(positionMs - expectedPositionMs(nowMs)) > DRIFT_TOLERANCE_MS) return REASON_DRIFT;
+        return null;
+    }
+}
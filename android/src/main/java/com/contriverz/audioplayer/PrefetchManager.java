@@ -0,0 +1,123 @@
+package com.contriverz.audioplayer;
+
+import android.net.Uri;
+import android.util.Log;
+
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheWriter;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Warms the first few seconds of upcoming queue items into the MediaCache,
+ * so skipping to them does not pay the connection and initial buffer latency.
+ */
+public class PrefetchManager {
+
+    private static final String TAG = "PrefetchManager";
+
+    // Roughly 320 kbps, used to turn "N seconds" into a byte range
+    private static final long ESTIMATED_BYTES_PER_SECOND = 40 * 1024;
+
+    private final CacheDataSource.Factory writeFactory;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private final List<CacheWriter> activeWriters = new ArrayList<>();
+    private Future<?> pending;
+
+    private boolean enabled = true;
+    private int trackCount = 2;
+    private int seconds = 10;
+    private long maxBytes = 4 * 1024 * 1024;
+
+    public PrefetchManager(MediaCache mediaCache) {
+        writeFactory = mediaCache.getWriteDataSourceFactory();
+    }
+
+    public void configure(boolean enabled, int trackCount, int seconds, long maxBytes) {
+        this.enabled = enabled;
+        this.trackCount = Math.max(0, trackCount);
+        this.seconds = Math.max(1, seconds);
+        this.maxBytes = Math.max(0, maxBytes);
+        if (!enabled) {
+            cancel();
+        }
+    }
+
+    public int getTrackCount() {
+        return enabled ? trackCount : 0;
+    }
+
+    /**
+     * Replaces whatever is being prefetched with the given tracks, in order.
+     */
+    public synchronized void prefetch(List<AudioTrack> upcoming) {
+        cancel();
+        if (!enabled || upcoming.isEmpty() || maxBytes == 0) return;
+
+        long bytesPerTrack = Math.min(maxBytes / upcoming.size(), seconds * ESTIMATED_BYTES_PER_SECOND);
+        List<AudioTrack> tracks = new ArrayList<>(upcoming);
+
+        pending = executor.submit(() -> {
+            for (AudioTrack track : tracks) {
+                if (Thread.currentThread().isInterrupted()) return;
+                warm(track, bytesPerTrack);
+            }
+        });
+    }
+
+    private void warm(AudioTrack track, long length) {
+        String url = track.getUrl();
+        if (url == null || !url.startsWith("http")) return;
+
+        DataSpec dataSpec = new DataSpec.Builder()
+                .setUri(Uri.parse(url))
+                .setPosition(0)
+                .setLength(length)
+                .setKey(MediaCache.cacheKey(track))
+                .build();
+        CacheWriter writer = new CacheWriter(writeFactory.createDataSourceForDownloading(), dataSpec, null, null);
+
+        synchronized (activeWriters) {
+            activeWriters.add(writer);
+        }
+        try {
+            writer.cache();
+            Log.d(TAG, "📥 Prefetched " + length + " bytes of " + track.getTitle());
+        } catch (InterruptedIOException e) {
+            Log.d(TAG, "Prefetch cancelled: " + track.getTitle());
+        } catch (Exception e) {
+            Log.w(TAG, "Prefetch failed for " + url + ": " + e.getMessage());
+        } finally {
+            synchronized (activeWriters) {
+                activeWriters.remove(writer);
+            }
+        }
+    }
+
+    /**
+     * Stops any prefetch in flight, called whenever the queue or its order changes.
+     */
+    public synchronized void cancel() {
+        if (pending != null) {
+            pending.cancel(true);
+            pending = null;
+        }
+        synchronized (activeWriters) {
+            for (CacheWriter writer : activeWriters) {
+                writer.cancel();
+            }
+        }
+    }
+
+    public void release() {
+        cancel();
+        executor.shutdownNow();
+    }
+}
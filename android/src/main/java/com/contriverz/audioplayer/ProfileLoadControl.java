@@ -0,0 +1,116 @@
+package com.contriverz.audioplayer;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+
+/**
+ * LoadControl whose BufferProfile can be swapped while the player is alive.
+ *
+ * ExoPlayer takes its LoadControl once, at build time, so this hands every call to a
+ * DefaultLoadControl built from the current profile. All of them share one allocator,
+ * so media already buffered under the old profile stays valid, and the last track
+ * selection is replayed on a new delegate so its byte target applies right away.
+ */
+public class ProfileLoadControl implements LoadControl {
+
+    private final DefaultAllocator allocator = new DefaultAllocator(true, C.DEFAULT_BUFFER_SEGMENT_SIZE);
+
+    private volatile BufferProfile profile;
+    private volatile DefaultLoadControl delegate;
+
+    // Last selection, read and written on the player's internal thread only
+    private Renderer[] renderers;
+    private TrackGroupArray trackGroups;
+    private ExoTrackSelection[] trackSelections;
+    private DefaultLoadControl selectedDelegate;
+
+    public ProfileLoadControl(BufferProfile profile) {
+        setProfile(profile);
+    }
+
+    public BufferProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Safe from any thread, the player picks it up on its next buffering decision.
+     */
+    public void setProfile(BufferProfile profile) {
+        this.profile = profile;
+        delegate = new DefaultLoadControl.Builder()
+                .setAllocator(allocator)
+                .setBufferDurationsMs(profile.minBufferMs, profile.maxBufferMs,
+                        profile.bufferForPlaybackMs, profile.bufferForPlaybackAfterRebufferMs)
+                .setTargetBufferBytes(profile.targetBufferBytes)
+                // The byte target is the memory ceiling, it wins over minBufferMs
+                .setPrioritizeTimeOverSizeThresholds(false)
+                .build();
+    }
+
+    private DefaultLoadControl current() {
+        DefaultLoadControl current = delegate;
+        if (current != selectedDelegate && renderers != null) {
+            current.onTracksSelected(renderers, trackGroups, trackSelections);
+            selectedDelegate = current;
+        }
+        return current;
+    }
+
+    @Override
+    public void onPrepared() {
+        current().onPrepared();
+    }
+
+    @Override
+    public void onTracksSelected(Renderer[] renderers, TrackGroupArray trackGroups,
+                                 ExoTrackSelection[] trackSelections) {
+        this.renderers = renderers;
+        this.trackGroups = trackGroups;
+        this.trackSelections = trackSelections;
+        DefaultLoadControl current = delegate;
+        current.onTracksSelected(renderers, trackGroups, trackSelections);
+        selectedDelegate = current;
+    }
+
+    @Override
+    public void onStopped() {
+        current().onStopped();
+    }
+
+    @Override
+    public void onReleased() {
+        current().onReleased();
+    }
+
+    @Override
+    public Allocator getAllocator() {
+        return allocator;
+    }
+
+    @Override
+    public long getBackBufferDurationUs() {
+        return current().getBackBufferDurationUs();
+    }
+
+    @Override
+    public boolean retainBackBufferFromKeyframe() {
+        return current().retainBackBufferFromKeyframe();
+    }
+
+    @Override
+    public boolean shouldContinueLoading(long playbackPositionUs, long bufferedDurationUs, float playbackSpeed) {
+        return current().shouldContinueLoading(playbackPositionUs, bufferedDurationUs, playbackSpeed);
+    }
+
+    @Override
+    public boolean shouldStartPlayback(long bufferedDurationUs, float playbackSpeed, boolean rebuffering,
+                                       long targetLiveOffsetUs) {
+        return current().shouldStartPlayback(bufferedDurationUs, playbackSpeed, rebuffering, targetLiveOffsetUs);
+    }
+}
@@ -0,0 +1,307 @@
+package com.contriverz.audioplayer;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.provider.OpenableColumns;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Streams a queue from a file path or content:// URI without going through the bridge.
+ *
+ * The file is either one JSON array of track objects or NDJSON, one object per line.
+ * It is read token by token on a background thread, no document tree is built, and
+ * tracks are handed over in batches on the callback handler while the rest is still
+ * being read. The first batch goes out as soon as the start track has been parsed.
+ */
+public class QueueFileLoader {
+
+    private static final String TAG = "QueueFileLoader";
+    private static final int BATCH_SIZE = 500;
+    private static final long BATCH_INTERVAL_MS = 250;
+
+    public interface Callback {
+        /**
+         * Parsed tracks in file order. first is set on the first batch, which always
+         * contains the track at the requested start index when the file has one.
+         */
+        void onTracks(List<AudioTrack> tracks, boolean first);
+
+        void onProgress(int loaded, long bytesRead, long totalBytes);
+
+        void onComplete(int loaded, int skipped);
+
+        void onError(String message);
+    }
+
+    private final Context context;
+    private final Handler callbackHandler;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    // Bumped by every load() and cancel(), a load only delivers while it is still current
+    private volatile int generation;
+    private Callback active;
+
+    public QueueFileLoader(Context context, Handler callbackHandler) {
+        this.context = context.getApplicationContext();
+        this.callbackHandler = callbackHandler;
+    }
+
+    /**
+     * Starts loading, cancelling any load still in flight. Call on the callback handler's thread.
+     */
+    public void load(String path, int startIndex, Callback callback) {
+        cancel();
+        int loadGeneration = ++generation;
+        active = callback;
+        executor.execute(() -> read(path, Math.max(0, startIndex), loadGeneration, callback));
+    }
+
+    /**
+     * Stops the load in flight, its callback gets onError. Call on the callback handler's thread.
+     */
+    public void cancel() {
+        generation++;
+        if (active != null) {
+            Callback cancelled = active;
+            active = null;
+            cancelled.onError("Queue load cancelled");
+        }
+    }
+
+    public void release() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    private void read(String path, int startIndex, int loadGeneration, Callback callback) {
+        long startedAt = SystemClock.elapsedRealtime();
+        int loaded = 0;
+        int skipped = 0;
+        boolean firstSent = false;
+
+        long totalBytes = sizeOf(path);
+        try (CountingInputStream input = new CountingInputStream(open(path));
+             JsonReader reader = new JsonReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            // Lenient lets NDJSON through as a run of top-level objects
+            reader.setLenient(true);
+
+            boolean array = reader.peek() == JsonToken.BEGIN_ARRAY;
+            if (array) reader.beginArray();
+
+            List<AudioTrack> batch = new ArrayList<>();
+            long lastDelivery = SystemClock.elapsedRealtime();
+            while (array ? reader.hasNext() : reader.peek() != JsonToken.END_DOCUMENT) {
+                if (loadGeneration != generation) return;
+
+                AudioTrack track = readTrack(reader);
+                if (track == null) {
+                    skipped++;
+                    continue;
+                }
+                batch.add(track);
+                loaded++;
+
+                long now = SystemClock.elapsedRealtime();
+                boolean due = firstSent
+                        ? batch.size() >= BATCH_SIZE || now - lastDelivery >= BATCH_INTERVAL_MS
+                        : loaded > startIndex;
+                if (due) {
+                    deliver(loadGeneration, callback, batch, !firstSent, loaded, input.getCount(), totalBytes);
+                    batch = new ArrayList<>();
+                    firstSent = true;
+                    lastDelivery = now;
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                deliver(loadGeneration, callback, batch, !firstSent, loaded, input.getCount(), totalBytes);
+            }
+
+            int finalLoaded = loaded;
+            int finalSkipped = skipped;
+            Log.d(TAG, "📄 Loaded " + loaded + " tracks (" + skipped + " skipped) in "
+                    + (SystemClock.elapsedRealtime() - startedAt) + "ms");
+            post(loadGeneration, () -> {
+                active = null;
+                if (finalLoaded == 0) {
+                    callback.onError("No valid tracks found in " + path);
+                } else {
+                    callback.onComplete(finalLoaded, finalSkipped);
+                }
+            });
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Queue file load failed: " + e.getMessage(), e);
+            post(loadGeneration, () -> {
+                active = null;
+                callback.onError("Queue file load failed: " + e.getMessage());
+            });
+        }
+    }
+
+    private void deliver(int loadGeneration, Callback callback, List<AudioTrack> batch, boolean first,
+                         int loaded, long bytesRead, long totalBytes) {
+        post(loadGeneration, () -> {
+            callback.onTracks(batch, first);
+            callback.onProgress(loaded, bytesRead, totalBytes);
+        });
+    }
+
+    private void post(int loadGeneration, Runnable runnable) {
+        callbackHandler.post(() -> {
+            if (loadGeneration == generation) runnable.run();
+        });
+    }
+
+    /**
+     * Reads one track object, or skips whatever value is there. Null when it is not a playable track.
+     */
+    private static AudioTrack readTrack(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+
+        String id = null, title = null, artist = null, album = null, url = null, artwork = null;
+        Double duration = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    id = readString(reader);
+                    break;
+                case "title":
+                    title = readString(reader);
+                    break;
+                case "artist":
+                    artist = readString(reader);
+                    break;
+                case "album":
+                    album = readString(reader);
+                    break;
+                case "url":
+                    url = readString(reader);
+                    break;
+                case "artwork":
+                    artwork = readString(reader);
+                    break;
+                case "duration":
+                    duration = readDouble(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return TrackParser.build(id, title, artist, album, duration, url, artwork);
+    }
+
+    /**
+     * Strings and numbers as text, anything else is skipped and read as missing.
+     */
+    private static String readString(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return reader.nextString();
+        }
+        reader.skipValue();
+        return null;
+    }
+
+    private static Double readDouble(JsonReader reader) throws IOException {
+        String value = readString(reader);
+        if (value == null) return null;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private InputStream open(String path) throws IOException {
+        if (path.startsWith("content://")) {
+            InputStream input = context.getContentResolver().openInputStream(Uri.parse(path));
+            if (input == null) throw new IOException("Cannot open " + path);
+            return new BufferedInputStream(input, 64 * 1024);
+        }
+        return new BufferedInputStream(new FileInputStream(toFile(path)), 64 * 1024);
+    }
+
+    private long sizeOf(String path) {
+        if (!path.startsWith("content://")) {
+            File file = toFile(path);
+            return file.exists() ? file.length() : -1;
+        }
+
+        try (Cursor cursor = context.getContentResolver().query(Uri.parse(path),
+                new String[]{OpenableColumns.SIZE}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getLong(0);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "No size for " + path + ": " + e.getMessage());
+        }
+        return -1;
+    }
+
+    private static File toFile(String path) {
+        return new File(path.startsWith("file://") ? path.substring("file://".length()) : path);
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value >= 0) count++;
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) count += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
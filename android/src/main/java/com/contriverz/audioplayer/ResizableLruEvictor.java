@@ -0,0 +1,103 @@
+package com.contriverz.audioplayer;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+
+import java.util.TreeSet;
+
+/**
+ * Same policy as ExoPlayer's LeastRecentlyUsedCacheEvictor, but the size cap can
+ * be changed after the cache has been created.
+ */
+public class ResizableLruEvictor implements CacheEvictor {
+
+    private final TreeSet<CacheSpan> leastRecentlyUsed = new TreeSet<>(ResizableLruEvictor::compare);
+
+    private long maxBytes;
+    private long currentSize;
+    private Cache cache;
+
+    public ResizableLruEvictor(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Changes the cap and evicts right away if the cache is now over it.
+     */
+    public void setMaxBytes(long maxBytes) {
+        Cache target;
+        synchronized (this) {
+            this.maxBytes = maxBytes;
+            target = cache;
+        }
+        if (target != null) {
+            evictCache(target, 0);
+        }
+    }
+
+    @Override
+    public boolean requiresCacheSpanTouches() {
+        return true;
+    }
+
+    @Override
+    public void onCacheInitialized() {
+        // Do nothing.
+    }
+
+    @Override
+    public void onStartFile(Cache cache, String key, long position, long length) {
+        if (length != C.LENGTH_UNSET) {
+            evictCache(cache, length);
+        }
+    }
+
+    @Override
+    public void onSpanAdded(Cache cache, CacheSpan span) {
+        synchronized (this) {
+            this.cache = cache;
+            leastRecentlyUsed.add(span);
+            currentSize += span.length;
+        }
+        evictCache(cache, 0);
+    }
+
+    @Override
+    public synchronized void onSpanRemoved(Cache cache, CacheSpan span) {
+        leastRecentlyUsed.remove(span);
+        currentSize -= span.length;
+    }
+
+    @Override
+    public void onSpanTouched(Cache cache, CacheSpan oldSpan, CacheSpan newSpan) {
+        onSpanRemoved(cache, oldSpan);
+        onSpanAdded(cache, newSpan);
+    }
+
+    private void evictCache(Cache cache, long requiredSpace) {
+        while (true) {
+            CacheSpan oldest;
+            synchronized (this) {
+                if (currentSize + requiredSpace <= maxBytes || leastRecentlyUsed.isEmpty()) return;
+                oldest = leastRecentlyUsed.first();
+            }
+            // removeSpan calls back into onSpanRemoved
+            cache.removeSpan(oldest);
+        }
+    }
+
+    private static int compare(CacheSpan lhs, CacheSpan rhs) {
+        long lastTouchTimestampDelta = lhs.lastTouchTimestamp - rhs.lastTouchTimestamp;
+        if (lastTouchTimestampDelta == 0) {
+            // Use the standard compareTo method as a tie-break.
+            return lhs.compareTo(rhs);
+        }
+        return lhs.lastTouchTimestamp < rhs.lastTouchTimestamp ? -1 : 1;
+    }
+}
@@ -0,0 +1,74 @@
+package com.contriverz.audioplayer;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.drm.DrmSessionManagerProvider;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.source.DefaultMediaSourceFactory;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.source.ProgressiveMediaSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.LoadErrorHandlingPolicy;
+
+/**
+ * DefaultMediaSourceFactory, except that tracks with a stored seek index are extracted
+ * by IndexedMp3Extractor. Items are matched by mediaId, which is the AudioTrack id.
+ */
+public class SeekIndexMediaSourceFactory implements MediaSource.Factory {
+
+    private final DataSource.Factory dataSourceFactory;
+    private final DefaultMediaSourceFactory delegate;
+    private final SeekIndexStore seekIndex;
+
+    private DrmSessionManagerProvider drmSessionManagerProvider;
+    private LoadErrorHandlingPolicy loadErrorHandlingPolicy;
+
+    public SeekIndexMediaSourceFactory(DataSource.Factory dataSourceFactory, SeekIndexStore seekIndex) {
+        this.dataSourceFactory = dataSourceFactory;
+        this.delegate = new DefaultMediaSourceFactory(dataSourceFactory);
+        this.seekIndex = seekIndex;
+    }
+
+    @NonNull
+    @Override
+    public MediaSource.Factory setDrmSessionManagerProvider(@NonNull DrmSessionManagerProvider provider) {
+        drmSessionManagerProvider = provider;
+        delegate.setDrmSessionManagerProvider(provider);
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public MediaSource.Factory setLoadErrorHandlingPolicy(@NonNull LoadErrorHandlingPolicy policy) {
+        loadErrorHandlingPolicy = policy;
+        delegate.setLoadErrorHandlingPolicy(policy);
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public int[] getSupportedTypes() {
+        return delegate.getSupportedTypes();
+    }
+
+    @NonNull
+    @Override
+    public MediaSource createMediaSource(@NonNull MediaItem mediaItem) {
+        String id = mediaItem.mediaId;
+        Mp3SeekIndex index = seekIndex.get(id);
+        if (index == null) {
+            return delegate.createMediaSource(mediaItem);
+        }
+
+        ProgressiveMediaSource.Factory factory = new ProgressiveMediaSource.Factory(dataSourceFactory,
+                () -> new Extractor[] {new IndexedMp3Extractor(index, () -> seekIndex.invalidate(id))});
+        if (drmSessionManagerProvider != null) {
+            factory.setDrmSessionManagerProvider(drmSessionManagerProvider);
+        }
+        if (loadErrorHandlingPolicy != null) {
+            factory.setLoadErrorHandlingPolicy(loadErrorHandlingPolicy);
+        }
+        return factory.createMediaSource(mediaItem);
+    }
+}
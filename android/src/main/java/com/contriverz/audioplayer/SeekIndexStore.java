@@ -0,0 +1,168 @@
+package com.contriverz.audioplayer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Mp3SeekIndex per AudioTrack id, one small file each, built in the background on first request.
+ *
+ * Tracks that turn out not to be layer III are remembered for the session so they are
+ * not read again. The oldest files go once there are more than MAX_FILES.
+ *
+ * Plain Java on purpose, no Android or ExoPlayer types.
+ */
+public class SeekIndexStore {
+
+    private static final int MAX_FILES = 256;
+    private static final int MEMORY_ENTRIES = 8;
+
+    public interface Source {
+        /** The whole stream from byte 0, closed by the store. */
+        InputStream open() throws IOException;
+    }
+
+    private final File dir;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "SeekIndexer");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final Map<String, Mp3SeekIndex> memory = new LinkedHashMap<String, Mp3SeekIndex>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Mp3SeekIndex> eldest) {
+            return size() > MEMORY_ENTRIES;
+        }
+    };
+    private final Set<String> pending = Collections.synchronizedSet(new HashSet<>());
+    private final Set<String> unindexable = Collections.synchronizedSet(new HashSet<>());
+
+    public SeekIndexStore(File dir) {
+        this.dir = dir;
+        dir.mkdirs();
+    }
+
+    /**
+     * The stored index, or null. Reads the disk on a memory miss, a few kilobytes at most.
+     */
+    public Mp3SeekIndex get(String id) {
+        synchronized (memory) {
+            Mp3SeekIndex index = memory.get(id);
+            if (index != null) return index;
+        }
+
+        File file = fileFor(id);
+        if (!file.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            Mp3SeekIndex index = Mp3SeekIndex.read(in);
+            synchronized (memory) {
+                memory.put(id, index);
+            }
+            return index;
+        } catch (IOException e) {
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Indexes the track in the background unless it already is, is being indexed, or cannot be.
+     * Returns the background pass, null if none was started.
+     */
+    public Future<?> build(String id, Source source) {
+        if (unindexable.contains(id) || !pending.add(id)) return null;
+        return executor.submit(() -> {
+            try {
+                if (fileFor(id).exists()) return;
+                Mp3SeekIndex index;
+                try (InputStream in = source.open()) {
+                    index = Mp3SeekIndex.scan(in);
+                }
+                if (index == null) {
+                    unindexable.add(id);
+                    return;
+                }
+                save(id, index);
+            } catch (IOException e) {
+                // Most likely the network, worth another try on a later load
+            } finally {
+                pending.remove(id);
+            }
+        });
+    }
+
+    /**
+     * Drops an index that no longer matches the track's bytes.
+     */
+    public void invalidate(String id) {
+        synchronized (memory) {
+            memory.remove(id);
+        }
+        fileFor(id).delete();
+    }
+
+    public void release() {
+        executor.shutdownNow();
+    }
+
+    private void save(String id, Mp3SeekIndex index) throws IOException {
+        File file = fileFor(id);
+        File temp = new File(dir, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            index.write(out);
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return;
+        }
+        synchronized (memory) {
+            memory.put(id, index);
+        }
+        trim();
+    }
+
+    private void trim() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".idx"));
+        if (files == null || files.length <= MAX_FILES) return;
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (int i = 0; i < files.length - MAX_FILES; i++) {
+            files[i].delete();
+        }
+    }
+
+    private File fileFor(String id) {
+        return new File(dir, hash(id) + ".idx");
+    }
+
+    private static String hash(String id) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(id.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.contriverz.audioplayer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the playback session on disk so it survives process death.
+ *
+ * The queue is a journal. Setting a queue rewrites it, while added and removed tracks
+ * are appended as records, so a large queue is written in full only when it is
+ * replaced or when removals pile up. Current track, position and modes live in a
+ * small separate state file. That file is rewritten at most every STATE_INTERVAL_MS
+ * however often it is saved. It holds the whole current track, so playback can be
+ * restored from it alone while the journal is still being replayed.
+ *
+ * All IO happens in order on one background thread. Plain Java on purpose, no
+ * Android or Capacitor types.
+ */
+public class SessionStore {
+
+    private static final int MAGIC = 0x41505353; // "APSS"
+    private static final int VERSION = 1;
+    private static final int STATE_VERSION = 2;
+    private static final long STATE_INTERVAL_MS = 2000;
+    // Removals before the journal is worth rewriting, if they also outnumber live tracks
+    private static final int MIN_COMPACT_REMOVALS = 1024;
+
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE = 2;
+
+    public static class State {
+        public final AudioTrack track;
+        // Where the track sits in the queue, the id alone is ambiguous when repeated
+        public final int queuePosition;
+        public final long positionMs;
+        public final String repeatMode;
+        public final boolean shuffle;
+        public final float rate;
+
+        public State(AudioTrack track, int queuePosition, long positionMs, String repeatMode, boolean shuffle,
+                     float rate) {
+            this.track = track;
+            this.queuePosition = queuePosition;
+            this.positionMs = positionMs;
+            this.repeatMode = repeatMode;
+            this.shuffle = shuffle;
+            this.rate = rate;
+        }
+    }
+
+    public interface QueueCallback {
+        /** Called on the store's thread, queue is null when there is no saved queue. */
+        void onQueue(TrackQueue queue);
+    }
+
+    private final File queueFile;
+    private final File stateFile;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    // Latest unsaved state, written by the next scheduled flush
+    private State pendingState;
+    private boolean flushScheduled;
+    private int liveTracks;
+    private int removals;
+
+    public SessionStore(File dir) {
+        dir.mkdirs();
+        queueFile = new File(dir, "queue.journal");
+        stateFile = new File(dir, "state");
+    }
+
+    // Queue journal
+
+    /**
+     * Replaces the saved queue.
+     */
+    public synchronized void queueSet(List<AudioTrack> tracks) {
+        liveTracks = tracks.size();
+        removals = 0;
+        executor.execute(() -> {
+            try (DataOutputStream out = open(false)) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeAdd(out, tracks);
+            } catch (IOException e) {
+                queueFile.delete();
+            }
+        });
+    }
+
+    public synchronized void tracksAdded(List<AudioTrack> tracks) {
+        liveTracks += tracks.size();
+        append(out -> writeAdd(out, tracks));
+    }
+
+    /**
+     * Records the removal of the track at this position in the queue, as JS counts it.
+     * Returns true once removals make up most of the journal, the caller should then
+     * pass the whole queue to queueSet().
+     */
+    public synchronized boolean trackRemoved(String id, int position) {
+        liveTracks--;
+        removals++;
+        append(out -> {
+            out.writeByte(OP_REMOVE);
+            out.writeUTF(id);
+            out.writeInt(position);
+        });
+        return removals > MIN_COMPACT_REMOVALS && removals > liveTracks;
+    }
+
+    /**
+     * Forgets the whole session, queue and state.
+     */
+    public synchronized void clear() {
+        liveTracks = 0;
+        removals = 0;
+        pendingState = null;
+        executor.execute(() -> {
+            queueFile.delete();
+            stateFile.delete();
+        });
+    }
+
+    /**
+     * Replays the journal in the background into a queue ready to be adopted by the engine.
+     */
+    public void loadQueue(int compactThreshold, QueueCallback callback) {
+        executor.execute(() -> callback.onQueue(readQueue(compactThreshold)));
+    }
+
+    private TrackQueue readQueue(int compactThreshold) {
+        if (!queueFile.exists()) return null;
+
+        TrackQueue queue = new TrackQueue();
+        queue.setCompactThreshold(compactThreshold);
+        int removed = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(queueFile), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            while (true) {
+                int op = in.read();
+                if (op < 0) break;
+                if (op == OP_ADD) {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        queue.add(readTrack(in));
+                    }
+                } else if (op == OP_REMOVE) {
+                    // By position, ids need not be unique. The id only checks the record still fits.
+                    String id = in.readUTF();
+                    int index = queue.indexAtPosition(in.readInt());
+                    if (index < 0 || !id.equals(queue.getId(index))) return null;
+                    queue.remove(index);
+                    removed++;
+                } else {
+                    break;
+                }
+            }
+        } catch (EOFException e) {
+            // A record cut short by process death, everything before it stands
+        } catch (IOException e) {
+            return null;
+        }
+
+        synchronized (this) {
+            liveTracks = queue.size();
+            removals = removed;
+        }
+        return queue;
+    }
+
+    private interface Record {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private void append(Record record) {
+        executor.execute(() -> {
+            if (!queueFile.exists()) return;
+            try (DataOutputStream out = open(true)) {
+                record.write(out);
+            } catch (IOException e) {
+                // The journal no longer matches the queue, better none than a wrong one
+                queueFile.delete();
+            }
+        });
+    }
+
+    private DataOutputStream open(boolean append) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(queueFile, append), 64 * 1024));
+    }
+
+    private static void writeAdd(DataOutputStream out, List<AudioTrack> tracks) throws IOException {
+        out.writeByte(OP_ADD);
+        out.writeInt(tracks.size());
+        for (AudioTrack track : tracks) {
+            writeTrack(out, track);
+        }
+    }
+
+    // State
+
+    /**
+     * Remembers the state, it reaches disk with the next flush at most STATE_INTERVAL_MS later.
+     */
+    public synchronized void saveState(State state) {
+        pendingState = state;
+        if (flushScheduled) return;
+        flushScheduled = true;
+        executor.schedule(this::writeState, STATE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes pending state now, e.g. when the app goes to the background.
+     */
+    public void flush() {
+        executor.execute(this::writeState);
+    }
+
+    /**
+     * The saved state, or null. Small enough to read on any thread.
+     */
+    public State readState() {
+        if (!stateFile.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(stateFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != STATE_VERSION) return null;
+            AudioTrack track = readTrack(in);
+            int queuePosition = in.readInt();
+            long positionMs = in.readLong();
+            String repeatMode = in.readUTF();
+            boolean shuffle = in.readBoolean();
+            float rate = in.readFloat();
+            return new State(track, queuePosition, positionMs, repeatMode, shuffle, rate);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeState() {
+        State state;
+        synchronized (this) {
+            state = pendingState;
+            pendingState = null;
+            flushScheduled = false;
+        }
+        if (state == null) return;
+
+        File temp = new File(stateFile.getParentFile(), stateFile.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(STATE_VERSION);
+            writeTrack(out, state.track);
+            out.writeInt(state.queuePosition);
+            out.writeLong(state.positionMs);
+            out.writeUTF(state.repeatMode);
+            out.writeBoolean(state.shuffle);
+            out.writeFloat(state.rate);
+        } catch (IOException e) {
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(stateFile)) {
+            temp.delete();
+        }
+    }
+
+    public void release() {
+        flush();
+        executor.shutdown();
+    }
+
+    // Track records
+
+    private static void writeTrack(DataOutputStream out, AudioTrack track) throws IOException {
+        out.writeUTF(track.getId());
+        writeString(out, track.getTitle());
+        writeString(out, track.getArtist());
+        writeString(out, track.getAlbum());
+        out.writeDouble(track.getDuration() != null ? track.getDuration() : -1);
+        out.writeUTF(track.getUrl());
+        writeString(out, track.getArtwork());
+    }
+
+    private static AudioTrack readTrack(DataInputStream in) throws IOException {
+        String id = in.readUTF();
+        String title = readString(in);
+        String artist = readString(in);
+        String album = readString(in);
+        double duration = in.readDouble();
+        String url = in.readUTF();
+        String artwork = readString(in);
+        return new AudioTrack(id, title, artist, album, duration >= 0 ? duration : null, url, artwork);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,85 @@
+package com.contriverz.audioplayer;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Turns the JSON track objects sent from JS into AudioTracks.
+ *
+ * Only depends on org.json so it can be benchmarked on a plain JVM.
+ */
+public final class TrackParser {
+
+    public static final String DEFAULT_TITLE = "Unknown Track";
+    public static final String DEFAULT_ARTIST = "Unknown Artist";
+    public static final String DEFAULT_ALBUM = "Unknown Album";
+
+    // Ids for tracks sent without one. Queue, caches and the saved session are keyed by id,
+    // so these must never repeat: a counter, behind a prefix that differs per process.
+    private static final String GENERATED_ID_PREFIX = "track-" + Long.toString(System.currentTimeMillis(), 36) + "-";
+    private static final AtomicLong generatedIds = new AtomicLong();
+
+    private TrackParser() {}
+
+    /**
+     * Returns null when the object has no url, since there is nothing to play.
+     */
+    public static AudioTrack parse(JSONObject json) {
+        if (json == null) return null;
+
+        String url = json.optString("url", "");
+        if (url.isEmpty()) return null;
+
+        String id = json.optString("id", null);
+        if (id == null) id = generateId();
+        String title = json.optString("title", DEFAULT_TITLE);
+        String artist = json.optString("artist", DEFAULT_ARTIST);
+        String album = json.optString("album", DEFAULT_ALBUM);
+        String artwork = json.optString("artwork", "");
+        double duration = json.optDouble("duration", 0.0);
+
+        return new AudioTrack(id, title, artist, album, duration, url, artwork);
+    }
+
+    /**
+     * Same defaults as parse() for fields read some other way, null means missing.
+     * Returns null when there is no url.
+     */
+    public static AudioTrack build(String id, String title, String artist, String album,
+                                   Double duration, String url, String artwork) {
+        if (url == null || url.isEmpty()) return null;
+
+        return new AudioTrack(
+                id != null ? id : generateId(),
+                title != null ? title : DEFAULT_TITLE,
+                artist != null ? artist : DEFAULT_ARTIST,
+                album != null ? album : DEFAULT_ALBUM,
+                duration != null ? duration : 0.0,
+                url,
+                artwork != null ? artwork : "");
+    }
+
+    private static String generateId() {
+        return GENERATED_ID_PREFIX + generatedIds.incrementAndGet();
+    }
+
+    /**
+     * Parses every entry of the array, skipping the ones that are not valid tracks.
+     */
+    public static List<AudioTrack> parseAll(JSONArray array) {
+        if (array == null) return new ArrayList<>();
+
+        List<AudioTrack> tracks = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            AudioTrack track = parse(array.optJSONObject(i));
+            if (track != null) {
+                tracks.add(track);
+            }
+        }
+        return tracks;
+    }
+}
@@ -0,0 +1,512 @@
+package com.contriverz.audioplayer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * The ordered list of tracks the player works through.
+ *
+ * Indices are slots in a backing array. Appends never move them and a removal
+ * only leaves a hole, so both are O(1); holes are compacted away once they
+ * outnumber live tracks, which is the only time indices are renumbered. Ids map
+ * straight to their index. A Fenwick tree over the holes turns an index into its
+ * position among the remaining tracks and back in O(log n). Ids need not be unique, an id queued more than once
+ * keeps all of its indices and lookups find the first.
+ *
+ * Shuffle is an int[] permutation of indices next to the tracks, toggling it
+ * never reorders or copies the tracks themselves.
+ *
+ * Past the compact threshold the tracks move into a CompactTrackStore, after
+ * which get() hands out a new AudioTrack view on every call.
+ */
+public class TrackQueue implements Iterable<AudioTrack> {
+
+    public static final int DEFAULT_COMPACT_THRESHOLD = 5000;
+    private static final int MIN_COMPACT_HOLES = 32;
+
+    // Exactly one of these holds the tracks
+    private AudioTrack[] slots = new AudioTrack[16];
+    private CompactTrackStore store;
+    private int compactThreshold = DEFAULT_COMPACT_THRESHOLD;
+    private int slotCount;
+    private int liveCount;
+    // Lowest index of each id, plus the higher ones in ascending order for ids queued more than once
+    private final Map<String, Integer> indexById = new HashMap<>();
+    private final Map<String, List<Integer>> duplicateIndices = new HashMap<>();
+    // Fenwick tree counting holes, 1-based over capacity(). Null while there are none.
+    private int[] holeTree;
+
+    // Play order as indices, and each index's position in it. Null when not shuffled.
+    private int[] order;
+    private int[] positions;
+    private Random random;
+    // Tracks appended since shuffle was turned on are shuffled in among each other from here on
+    private int firstAppendPosition;
+
+    /**
+     * Number of tracks in the queue.
+     */
+    public int size() {
+        return liveCount;
+    }
+
+    public boolean isEmpty() {
+        return liveCount == 0;
+    }
+
+    /**
+     * The track at this index, or null if it has been removed.
+     */
+    public AudioTrack get(int index) {
+        return store != null ? store.get(index) : slots[index];
+    }
+
+    /**
+     * Id of the track at this index without building a view, null if it has been removed.
+     */
+    public String getId(int index) {
+        if (store != null) return store.getId(index);
+        AudioTrack track = slots[index];
+        return track != null ? track.getId() : null;
+    }
+
+    /**
+     * Queue size from which tracks are kept in compact storage, 0 to always use it.
+     */
+    public void setCompactThreshold(int compactThreshold) {
+        this.compactThreshold = Math.max(0, compactThreshold);
+        if (store == null && slotCount >= this.compactThreshold && slotCount > 0) {
+            switchToCompact();
+        }
+    }
+
+    public boolean isCompact() {
+        return store != null;
+    }
+
+    public void add(AudioTrack track) {
+        if (store == null && slotCount + 1 >= compactThreshold) {
+            switchToCompact();
+        }
+        ensureCapacity(slotCount + 1);
+        int index = slotCount++;
+        if (store != null) {
+            store.set(index, track);
+        } else {
+            slots[index] = track;
+        }
+        mapIndex(track.getId(), index);
+        liveCount++;
+
+        if (order != null) {
+            // New tracks go somewhere random among the others added since shuffling, after everything queued before it
+            order[index] = index;
+            positions[index] = index;
+            int swapWith = index - random.nextInt(index - firstAppendPosition + 1);
+            swapPositions(index, swapWith);
+        }
+    }
+
+    /**
+     * Appends the tracks in order, returns the index of the first one.
+     */
+    public int addAll(Collection<AudioTrack> added) {
+        return addAll(added, -1);
+    }
+
+    /**
+     * Appends the tracks in order, returns the index of the first one. When shuffled they
+     * only land after currentIndex in play order, so none are placed among tracks already played.
+     */
+    public int addAll(Collection<AudioTrack> added, int currentIndex) {
+        ensureCapacity(slotCount + added.size());
+        if (store == null && slotCount + added.size() >= compactThreshold) {
+            switchToCompact();
+        }
+        if (order != null && currentIndex >= 0 && currentIndex < slotCount) {
+            firstAppendPosition = Math.max(firstAppendPosition, positions[currentIndex] + 1);
+        }
+        int first = slotCount;
+        for (AudioTrack track : added) {
+            add(track);
+        }
+        return first;
+    }
+
+    /**
+     * Removes the track at this index and returns it. May compact, other indices held
+     * across this call go through removeKeeping() instead.
+     */
+    public AudioTrack remove(int index) {
+        AudioTrack track = get(index);
+        if (track == null) return null;
+        removeSlot(index, track.getId());
+        return track;
+    }
+
+    /**
+     * Removes the track at this index and returns the index keep has afterwards, which
+     * only differs from keep when the removal compacted the queue.
+     */
+    public int removeKeeping(int index, int keep) {
+        String id = getId(index);
+        if (id == null) return keep;
+        int[] remap = removeSlot(index, id);
+        return remap != null ? remap[keep] : keep;
+    }
+
+    // Returns how compaction moved the indices, null when it did not happen
+    private int[] removeSlot(int index, String id) {
+        if (store != null) {
+            store.remove(index);
+        } else {
+            slots[index] = null;
+        }
+        unmapIndex(id, index);
+        liveCount--;
+        markHole(index);
+
+        int holes = slotCount - liveCount;
+        if (holes >= MIN_COMPACT_HOLES && holes > liveCount) {
+            return compact();
+        }
+        return null;
+    }
+
+    /**
+     * Empties the queue and goes back to plain storage.
+     */
+    public void clear() {
+        if (store != null) {
+            store = null;
+            slots = new AudioTrack[16];
+        } else {
+            for (int i = 0; i < slotCount; i++) {
+                slots[i] = null;
+            }
+        }
+        slotCount = 0;
+        liveCount = 0;
+        holeTree = null;
+        firstAppendPosition = 0;
+        indexById.clear();
+        duplicateIndices.clear();
+        if (order != null) {
+            order = new int[capacity()];
+            positions = new int[capacity()];
+        }
+    }
+
+    /**
+     * Index of the first track with this id in queue order, or -1.
+     */
+    public int indexOf(String trackId) {
+        if (trackId == null) return -1;
+        Integer index = indexById.get(trackId);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Where this index sits in the list of remaining tracks, which is what JS sees as an index.
+     */
+    public int positionOf(int index) {
+        if (holeTree == null) return index;
+        int holes = 0;
+        for (int i = index; i > 0; i -= i & -i) {
+            holes += holeTree[i];
+        }
+        return index - holes;
+    }
+
+    /**
+     * Index of the track at this position among the remaining ones, or -1. The inverse of positionOf().
+     */
+    public int indexAtPosition(int position) {
+        if (position < 0 || position >= liveCount) return -1;
+        if (holeTree == null) return position;
+        // Walks down the tree to the last slot with at most position live slots up to it
+        int index = 0;
+        int remaining = position + 1;
+        for (int step = Integer.highestOneBit(holeTree.length - 1); step > 0; step >>= 1) {
+            int next = index + step;
+            if (next >= holeTree.length) continue;
+            int live = step - holeTree[next];
+            if (live < remaining) {
+                index = next;
+                remaining -= live;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Turns shuffle on with a fresh permutation led by leadIndex, or off again.
+     */
+    public void setShuffle(boolean enabled, long seed, int leadIndex) {
+        if (!enabled) {
+            order = null;
+            positions = null;
+            random = null;
+            return;
+        }
+
+        random = new Random(seed);
+        order = new int[capacity()];
+        positions = new int[capacity()];
+        for (int i = 0; i < slotCount; i++) {
+            order[i] = i;
+        }
+        // Fisher-Yates over the primitive index array
+        for (int i = slotCount - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        for (int i = 0; i < slotCount; i++) {
+            positions[order[i]] = i;
+        }
+        // Shuffling never interrupts, the current track leads the new order
+        if (leadIndex >= 0 && leadIndex < slotCount) {
+            swapPositions(positions[leadIndex], 0);
+        }
+        firstAppendPosition = slotCount;
+    }
+
+    /**
+     * Reshuffles everything after this index in play order, the tracks up to it keep their places.
+     */
+    public void shuffleAfter(int index, long seed) {
+        if (order == null) return;
+
+        random = new Random(seed);
+        int start = index >= 0 && index < slotCount ? positions[index] + 1 : 0;
+        for (int i = slotCount - 1; i > start; i--) {
+            swapPositions(i, start + random.nextInt(i - start + 1));
+        }
+    }
+
+    public boolean isShuffled() {
+        return order != null;
+    }
+
+    /**
+     * Index after this one in play order, or -1 at the end unless wrap is set.
+     * With wrap, a single remaining track is its own next.
+     */
+    public int nextIndex(int index, boolean wrap) {
+        int position = playPosition(index);
+        for (int step = 1; step <= slotCount; step++) {
+            int next = position + step;
+            if (next >= slotCount) {
+                if (!wrap) return -1;
+                next -= slotCount;
+            }
+            int candidate = indexAtPlayPosition(next);
+            if (!isHole(candidate)) return candidate;
+        }
+        return -1;
+    }
+
+    public int previousIndex(int index, boolean wrap) {
+        int position = playPosition(index);
+        for (int step = 1; step <= slotCount; step++) {
+            int previous = position - step;
+            if (previous < 0) {
+                if (!wrap) return -1;
+                previous += slotCount;
+            }
+            int candidate = indexAtPlayPosition(previous);
+            if (!isHole(candidate)) return candidate;
+        }
+        return -1;
+    }
+
+    private int playPosition(int index) {
+        return order != null ? positions[index] : index;
+    }
+
+    private int indexAtPlayPosition(int position) {
+        return order != null ? order[position] : position;
+    }
+
+    private void swapPositions(int a, int b) {
+        int indexA = order[a];
+        int indexB = order[b];
+        order[a] = indexB;
+        order[b] = indexA;
+        positions[indexB] = a;
+        positions[indexA] = b;
+    }
+
+    // Indices of one id are only ever mapped in ascending order, appends and compaction both go front to back
+    private void mapIndex(String id, int index) {
+        if (indexById.putIfAbsent(id, index) != null) {
+            duplicateIndices.computeIfAbsent(id, key -> new ArrayList<>(2)).add(index);
+        }
+    }
+
+    private void unmapIndex(String id, int index) {
+        List<Integer> more = duplicateIndices.get(id);
+        if (indexById.get(id) == index) {
+            if (more == null) {
+                indexById.remove(id);
+                return;
+            }
+            indexById.put(id, more.remove(0));
+        } else if (more != null) {
+            more.remove(Integer.valueOf(index));
+        }
+        if (more != null && more.isEmpty()) {
+            duplicateIndices.remove(id);
+        }
+    }
+
+    private boolean isHole(int index) {
+        return store != null ? store.isEmpty(index) : slots[index] == null;
+    }
+
+    private int capacity() {
+        return store != null ? store.capacity() : slots.length;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= capacity()) return;
+
+        int grown = Math.max(capacity, capacity() + (capacity() >> 1));
+        if (store != null) {
+            store.ensureCapacity(grown);
+            grown = store.capacity();
+        } else {
+            AudioTrack[] resized = new AudioTrack[grown];
+            System.arraycopy(slots, 0, resized, 0, slotCount);
+            slots = resized;
+        }
+        if (order != null) {
+            int[] resizedOrder = new int[grown];
+            int[] resizedPositions = new int[grown];
+            System.arraycopy(order, 0, resizedOrder, 0, slotCount);
+            System.arraycopy(positions, 0, resizedPositions, 0, slotCount);
+            order = resizedOrder;
+            positions = resizedPositions;
+        }
+        if (holeTree != null) {
+            rebuildHoleTree();
+        }
+    }
+
+    private void markHole(int index) {
+        if (holeTree == null) {
+            holeTree = new int[capacity() + 1];
+        }
+        for (int i = index + 1; i < holeTree.length; i += i & -i) {
+            holeTree[i]++;
+        }
+    }
+
+    // Linear build, on resize only
+    private void rebuildHoleTree() {
+        holeTree = new int[capacity() + 1];
+        for (int i = 1; i < holeTree.length; i++) {
+            if (i <= slotCount && isHole(i - 1)) holeTree[i]++;
+            int parent = i + (i & -i);
+            if (parent < holeTree.length) holeTree[parent] += holeTree[i];
+        }
+    }
+
+    /**
+     * Squeezes out removed slots, keeping both the queue order and the play order.
+     * Returns each old index's new one, -1 for the removed ones.
+     */
+    private int[] compact() {
+        indexById.clear();
+        duplicateIndices.clear();
+        int[] remap = new int[slotCount];
+        int live = 0;
+        for (int i = 0; i < slotCount; i++) {
+            if (isHole(i)) {
+                remap[i] = -1;
+                continue;
+            }
+            remap[i] = live;
+            if (store != null) {
+                store.move(i, live);
+            } else {
+                slots[live] = slots[i];
+            }
+            mapIndex(getId(live), live);
+            live++;
+        }
+        if (store != null) {
+            store.truncate(live, slotCount);
+        } else {
+            for (int i = live; i < slotCount; i++) {
+                slots[i] = null;
+            }
+        }
+
+        if (order != null) {
+            int position = 0;
+            int appendPosition = 0;
+            for (int i = 0; i < slotCount; i++) {
+                int mapped = remap[order[i]];
+                if (mapped < 0) continue;
+                order[position] = mapped;
+                positions[mapped] = position;
+                position++;
+                // Whatever stayed of the appended run still mixes with later appends
+                if (i < firstAppendPosition) appendPosition = position;
+            }
+            firstAppendPosition = appendPosition;
+        }
+
+        slotCount = live;
+        holeTree = null;
+        return remap;
+    }
+
+    private void switchToCompact() {
+        CompactTrackStore compact = new CompactTrackStore(slots.length);
+        for (int i = 0; i < slotCount; i++) {
+            if (slots[i] != null) {
+                compact.set(i, slots[i]);
+            }
+        }
+        store = compact;
+        slots = null;
+        if (holeTree != null) {
+            rebuildHoleTree();
+        }
+    }
+
+    @Override
+    public Iterator<AudioTrack> iterator() {
+        return new Iterator<AudioTrack>() {
+            private int next = advance(0);
+
+            private int advance(int from) {
+                while (from < slotCount && isHole(from)) from++;
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < slotCount;
+            }
+
+            @Override
+            public AudioTrack next() {
+                if (next >= slotCount) throw new NoSuchElementException();
+                AudioTrack track = get(next);
+                next = advance(next + 1);
+                return track;
+            }
+        };
+    }
+}
@@ -0,0 +1,147 @@
+package com.contriverz.audioplayer;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Turns track urls into playable Uris without touching the filesystem on the caller's thread.
+ *
+ * Remote and content:// urls only need parsing and are answered inline. Local paths are
+ * checked for existence, which can block on slow or encrypted storage, so they are
+ * resolved on a background thread. Every result is cached per url, and upcoming tracks
+ * can be resolved ahead so a track change usually finds its Uri ready.
+ *
+ * A track with a completed offline download resolves to its local copy instead.
+ */
+public class UriResolver {
+
+    private static final String TAG = "UriResolver";
+    private static final int CACHE_SIZE = 1024;
+
+    /** How many upcoming tracks are worth resolving ahead. */
+    public static final int LOOKAHEAD = 3;
+
+    public interface Callback {
+        void onResolved(Uri uri);
+    }
+
+    private final LruCache<String, Uri> cache = new LruCache<>(CACHE_SIZE);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final OfflineDownloader downloads;
+
+    public UriResolver(OfflineDownloader downloads) {
+        this.downloads = downloads;
+    }
+
+    /**
+     * Calls back inline when the Uri is known or needs no IO, otherwise on the handler once resolved.
+     */
+    public void resolve(AudioTrack track, Handler handler, Callback callback) {
+        // Checked before the cache, a download may have finished since the url was last resolved
+        File local = downloads != null ? downloads.getFile(track.getId()) : null;
+        if (local != null) {
+            callback.onResolved(Uri.fromFile(local));
+            return;
+        }
+
+        String url = track.getUrl();
+        Uri cached = cache.get(url);
+        if (cached != null) {
+            callback.onResolved(cached);
+            return;
+        }
+        if (!isLocalPath(url)) {
+            callback.onResolved(resolveNow(url));
+            return;
+        }
+
+        executor.execute(() -> {
+            Uri uri = resolveNow(url);
+            handler.post(() -> callback.onResolved(uri));
+        });
+    }
+
+    /**
+     * Resolves local paths of the given tracks in the background, remote ones are left for load time.
+     */
+    public void prefetch(List<AudioTrack> tracks) {
+        for (AudioTrack track : tracks) {
+            String url = track.getUrl();
+            if (!isLocalPath(url) || cache.get(url) != null
+                    || (downloads != null && downloads.isDownloaded(track.getId()))) continue;
+            executor.execute(() -> resolveNow(url));
+        }
+    }
+
+    /**
+     * Forgets resolved urls, they are resolved again on next use.
+     */
+    public void clearCache() {
+        cache.evictAll();
+    }
+
+    public void release() {
+        executor.shutdownNow();
+        cache.evictAll();
+    }
+
+    private static boolean isLocalPath(String url) {
+        return !url.startsWith("http") && !url.startsWith("content://");
+    }
+
+    private Uri resolveNow(String url) {
+        Uri cached = cache.get(url);
+        if (cached != null) return cached;
+
+        Uri trackUri;
+        if (url.startsWith("http")) {
+            // Remote URL
+            trackUri = Uri.parse(url);
+            Log.d(TAG, "🌐 Remote URL: " + url);
+        } else if (url.startsWith("file://")) {
+            // File URI - need to handle properly
+            try {
+                // Remove "file://" prefix and handle the path
+                String filePath = url.replace("file://", "");
+                File file = new File(filePath);
+
+                if (file.exists()) {
+                    trackUri = Uri.fromFile(file);
+                    Log.d(TAG, "📁 Local file: " + file.getAbsolutePath());
+                } else {
+                    // Try alternative path handling
+                    trackUri = Uri.parse(url);
+                    Log.d(TAG, "⚠️ File not found, trying URI: " + url);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "❌ File path error, using URI directly", e);
+                trackUri = Uri.parse(url);
+            }
+        } else if (url.startsWith("content://")) {
+            // Content URI
+            trackUri = Uri.parse(url);
+            Log.d(TAG, "📦 Content URI: " + url);
+        } else {
+            // Assume it's a local file path
+            File file = new File(url);
+            if (file.exists()) {
+                trackUri = Uri.fromFile(file);
+                Log.d(TAG, "📁 Local file path: " + file.getAbsolutePath());
+            } else {
+                // Fallback to URI parsing
+                trackUri = Uri.parse(url);
+                Log.d(TAG, "⚠️ Using URI fallback: " + url);
+            }
+        }
+
+        cache.put(url, trackUri);
+        return trackUri;
+    }
+}
@@ -0,0 +1,328 @@
+package com.contriverz.audioplayer;
+
+import android.content.Context;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.net.Uri;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes tracks into WaveformPeaks on a small background pool, one cache file per AudioTrack id.
+ *
+ * Decoding streams through MediaCodec a buffer at a time, no PCM is kept beyond the
+ * buffer in hand. Partial peaks are reported while it runs. A cached waveform at a
+ * higher resolution is resampled instead of decoded again. Requests for the same
+ * track and resolution share one decode.
+ */
+public class WaveformLoader {
+
+    private static final String TAG = "WaveformLoader";
+    public static final int DEFAULT_RESOLUTION = 512;
+    public static final int MAX_RESOLUTION = 8192;
+    private static final int POOL_SIZE = 2;
+    private static final int MAX_FILES = 200;
+    private static final long PROGRESS_INTERVAL_MS = 250;
+    private static final long DEQUEUE_TIMEOUT_US = 10_000;
+
+    public interface Callback {
+        /** Peaks from..to-1 are final. Called on a worker thread. */
+        default void onProgress(String id, WaveformPeaks peaks, int from, int to) {}
+
+        /** Called on a worker thread, also for a cached waveform. */
+        void onComplete(String id, WaveformPeaks peaks);
+
+        void onError(String id, String message);
+    }
+
+    private static class Task {
+        final String id;
+        final List<Callback> callbacks = new ArrayList<>();
+        volatile boolean cancelled;
+
+        Task(String id) {
+            this.id = id;
+        }
+    }
+
+    private final Context context;
+    private final File dir;
+    private final NetworkClient network;
+    private final ThreadPoolExecutor pool;
+    // Keyed by id and resolution, guarded by itself
+    private final Map<String, Task> active = new HashMap<>();
+
+    public WaveformLoader(Context context, File dir, NetworkClient network) {
+        this.context = context.getApplicationContext();
+        this.dir = dir;
+        this.network = network;
+        pool = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> new Thread(() -> {
+                    // Below playback and the UI, this is never urgent
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }, "Waveform"));
+        pool.allowCoreThreadTimeOut(true);
+        dir.mkdirs();
+    }
+
+    /**
+     * Peaks for the track at this resolution, from the cache or decoded from uri.
+     */
+    public void load(AudioTrack track, Uri uri, int resolution, Callback callback) {
+        String id = track.getId();
+        String key = id + "@" + resolution;
+        synchronized (active) {
+            Task running = active.get(key);
+            if (running != null) {
+                running.callbacks.add(callback);
+                return;
+            }
+            Task task = new Task(id);
+            task.callbacks.add(callback);
+            active.put(key, task);
+            pool.execute(() -> run(task, key, track, uri, resolution));
+        }
+    }
+
+    /**
+     * Stops decoding this track, waiting callbacks get an error.
+     */
+    public void cancel(String id) {
+        synchronized (active) {
+            for (Task task : active.values()) {
+                if (task.id.equals(id)) task.cancelled = true;
+            }
+        }
+    }
+
+    public void release() {
+        synchronized (active) {
+            for (Task task : active.values()) {
+                task.cancelled = true;
+            }
+        }
+        pool.shutdownNow();
+    }
+
+    private void run(Task task, String key, AudioTrack track, Uri uri, int resolution) {
+        WaveformPeaks peaks = readCached(task.id);
+        String error = null;
+        if (peaks == null || peaks.getResolution() < resolution) {
+            try {
+                peaks = decode(task, uri, resolution, track.getDuration());
+                if (peaks != null) save(task.id, peaks);
+            } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+                Log.e(TAG, "Decoding " + task.id + " failed", e);
+                peaks = null;
+                error = e.getMessage() != null ? e.getMessage() : "Decoding failed";
+            }
+        } else {
+            peaks = peaks.resample(resolution);
+        }
+        if (peaks == null && error == null) error = "Cancelled";
+
+        List<Callback> callbacks;
+        synchronized (active) {
+            active.remove(key);
+            callbacks = new ArrayList<>(task.callbacks);
+        }
+        for (Callback callback : callbacks) {
+            if (peaks != null) {
+                callback.onComplete(task.id, peaks);
+            } else {
+                callback.onError(task.id, error);
+            }
+        }
+    }
+
+    /**
+     * Null when cancelled.
+     */
+    private WaveformPeaks decode(Task task, Uri uri, int resolution, Double fallbackDuration) throws IOException {
+        long startedAt = SystemClock.elapsedRealtime();
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+        try {
+            // MediaExtractor has its own HTTP stack, only the headers are shared
+            extractor.setDataSource(context, uri, network.headersFor(uri.getHost()));
+            MediaFormat format = null;
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat candidate = extractor.getTrackFormat(i);
+                String mime = candidate.getString(MediaFormat.KEY_MIME);
+                if (mime != null && mime.startsWith("audio/")) {
+                    extractor.selectTrack(i);
+                    format = candidate;
+                    break;
+                }
+            }
+            if (format == null) throw new IOException("No audio track");
+
+            long durationUs = format.containsKey(MediaFormat.KEY_DURATION) ? format.getLong(MediaFormat.KEY_DURATION)
+                    : fallbackDuration != null ? (long) (fallbackDuration * 1_000_000) : 0;
+            if (durationUs <= 0) throw new IOException("Unknown duration");
+
+            WaveformPeaks peaks = new WaveformPeaks(resolution, durationUs);
+            int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+            int channels = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+
+            codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            codec.configure(format, null, null, 0);
+            codec.start();
+
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            boolean inputDone = false;
+            int reported = 0;
+            long reportedAt = SystemClock.elapsedRealtime();
+            while (true) {
+                if (task.cancelled || Thread.currentThread().isInterrupted()) return null;
+
+                if (!inputDone) {
+                    int inputIndex = codec.dequeueInputBuffer(DEQUEUE_TIMEOUT_US);
+                    if (inputIndex >= 0) {
+                        ByteBuffer input = codec.getInputBuffer(inputIndex);
+                        int size = extractor.readSampleData(input, 0);
+                        if (size < 0) {
+                            codec.queueInputBuffer(inputIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        } else {
+                            codec.queueInputBuffer(inputIndex, 0, size, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+
+                int outputIndex = codec.dequeueOutputBuffer(info, DEQUEUE_TIMEOUT_US);
+                if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    MediaFormat output = codec.getOutputFormat();
+                    sampleRate = output.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                    channels = output.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                } else if (outputIndex >= 0) {
+                    if (info.size > 0) {
+                        ByteBuffer output = codec.getOutputBuffer(outputIndex);
+                        output.position(info.offset);
+                        output.limit(info.offset + info.size);
+                        peaks.addPcm16(output.order(ByteOrder.nativeOrder()).asShortBuffer(), channels, sampleRate,
+                                info.presentationTimeUs);
+                    }
+                    codec.releaseOutputBuffer(outputIndex, false);
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) break;
+                }
+
+                long now = SystemClock.elapsedRealtime();
+                if (peaks.getFilled() > reported && now - reportedAt >= PROGRESS_INTERVAL_MS) {
+                    report(task, peaks, reported, peaks.getFilled());
+                    reported = peaks.getFilled();
+                    reportedAt = now;
+                }
+            }
+
+            peaks.finish();
+            report(task, peaks, reported, peaks.getResolution());
+            Log.d(TAG, "〰️ " + task.id + " decoded in " + (SystemClock.elapsedRealtime() - startedAt) + "ms");
+            return peaks;
+        } finally {
+            if (codec != null) {
+                try {
+                    codec.stop();
+                } catch (IllegalStateException e) {
+                    // Never started
+                }
+                codec.release();
+            }
+            extractor.release();
+        }
+    }
+
+    private void report(Task task, WaveformPeaks peaks, int from, int to) {
+        if (from >= to) return;
+        List<Callback> callbacks;
+        synchronized (active) {
+            callbacks = new ArrayList<>(task.callbacks);
+        }
+        for (Callback callback : callbacks) {
+            callback.onProgress(task.id, peaks, from, to);
+        }
+    }
+
+    // Disk cache
+
+    private WaveformPeaks readCached(String id) {
+        File file = fileFor(id);
+        if (!file.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            WaveformPeaks peaks = WaveformPeaks.read(in);
+            file.setLastModified(System.currentTimeMillis());
+            return peaks;
+        } catch (IOException e) {
+            file.delete();
+            return null;
+        }
+    }
+
+    private void save(String id, WaveformPeaks peaks) {
+        File file = fileFor(id);
+        File temp = new File(dir, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            peaks.write(out);
+        } catch (IOException e) {
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return;
+        }
+        trim();
+    }
+
+    private void trim() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".peaks"));
+        if (files == null || files.length <= MAX_FILES) return;
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (int i = 0; i < files.length - MAX_FILES; i++) {
+            files[i].delete();
+        }
+    }
+
+    private File fileFor(String id) {
+        return new File(dir, hash(id) + ".peaks");
+    }
+
+    private static String hash(String id) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(id.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
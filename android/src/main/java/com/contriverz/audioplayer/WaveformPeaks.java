@@ -0,0 +1,151 @@
+package com.contriverz.audioplayer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ShortBuffer;
+
+/**
+ * Fixed number of amplitude peaks over a track, filled in from decoded 16 bit PCM as it arrives.
+ *
+ * Each peak covers an equal slice of the duration and holds the largest absolute sample
+ * in it, 0 to 1. Buffers are placed by their presentation time, so memory stays at one
+ * float per peak however long the track, and a prefix of the peaks is final as soon as
+ * decoding has moved past it.
+ *
+ * Plain Java on purpose, no Android types.
+ */
+public class WaveformPeaks {
+
+    private static final int MAGIC = 0x5750504b; // "WPPK"
+    private static final int VERSION = 1;
+
+    private final long durationUs;
+    private final float[] peaks;
+    // Peaks before this one will not change any more
+    private int filled;
+
+    public WaveformPeaks(int resolution, long durationUs) {
+        this.durationUs = durationUs;
+        this.peaks = new float[resolution];
+    }
+
+    public int getResolution() {
+        return peaks.length;
+    }
+
+    public long getDurationUs() {
+        return durationUs;
+    }
+
+    public float get(int index) {
+        return peaks[index];
+    }
+
+    /**
+     * Number of leading peaks that are final.
+     */
+    public int getFilled() {
+        return filled;
+    }
+
+    /**
+     * Adds interleaved 16 bit samples starting at timeUs, from the buffer's position to its limit.
+     */
+    public void addPcm16(ShortBuffer pcm, int channels, int sampleRate, long timeUs) {
+        int frames = pcm.remaining() / channels;
+        if (frames == 0 || durationUs <= 0) return;
+
+        int start = pcm.position();
+        int peak = bucketAt(timeUs);
+        long boundaryFrame = framesUntil(peak + 1, timeUs, sampleRate);
+        int max = 0;
+        for (int frame = 0; frame < frames; frame++) {
+            if (frame >= boundaryFrame && peak < peaks.length - 1) {
+                store(peak, max);
+                max = 0;
+                peak = bucketAt(timeUs + frame * 1_000_000L / sampleRate);
+                boundaryFrame = framesUntil(peak + 1, timeUs, sampleRate);
+            }
+            int base = start + frame * channels;
+            for (int channel = 0; channel < channels; channel++) {
+                int sample = pcm.get(base + channel);
+                if (sample < 0) sample = -sample;
+                if (sample > max) max = sample;
+            }
+        }
+        store(peak, max);
+        pcm.position(start + frames * channels);
+        filled = Math.max(filled, peak);
+    }
+
+    /**
+     * Marks every peak final, once the whole stream has been decoded.
+     */
+    public void finish() {
+        filled = peaks.length;
+    }
+
+    /**
+     * The same waveform at a lower resolution, each peak the largest of the ones it covers.
+     */
+    public WaveformPeaks resample(int resolution) {
+        if (resolution >= peaks.length) return this;
+        WaveformPeaks resampled = new WaveformPeaks(resolution, durationUs);
+        for (int i = 0; i < peaks.length; i++) {
+            int target = (int) ((long) i * resolution / peaks.length);
+            resampled.peaks[target] = Math.max(resampled.peaks[target], peaks[i]);
+        }
+        resampled.filled = (int) ((long) filled * resolution / peaks.length);
+        return resampled;
+    }
+
+    private int bucketAt(long timeUs) {
+        if (timeUs <= 0) return 0;
+        return (int) Math.min(peaks.length - 1, timeUs * peaks.length / durationUs);
+    }
+
+    // Frames from timeUs until the start of this peak
+    private long framesUntil(int peak, long timeUs, int sampleRate) {
+        long startUs = (durationUs * peak + peaks.length - 1) / peaks.length;
+        long us = startUs - timeUs;
+        return us <= 0 ? 0 : (us * sampleRate + 999_999) / 1_000_000;
+    }
+
+    private void store(int peak, int max) {
+        float value = Math.min(1f, max / 32768f);
+        if (value > peaks[peak]) peaks[peak] = value;
+    }
+
+    // Storage, one byte per peak
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(durationUs);
+        out.writeInt(peaks.length);
+        for (float peak : peaks) {
+            out.writeByte(Math.round(peak * 255));
+        }
+    }
+
+    /**
+     * Reads what write() stored, all peaks final.
+     */
+    public static WaveformPeaks read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not a waveform file");
+        }
+        long durationUs = in.readLong();
+        int resolution = in.readInt();
+        if (resolution <= 0 || resolution > 1 << 20) {
+            throw new IOException("Bad resolution " + resolution);
+        }
+        WaveformPeaks waveform = new WaveformPeaks(resolution, durationUs);
+        for (int i = 0; i < resolution; i++) {
+            waveform.peaks[i] = in.readUnsignedByte() / 255f;
+        }
+        waveform.filled = resolution;
+        return waveform;
+    }
+}
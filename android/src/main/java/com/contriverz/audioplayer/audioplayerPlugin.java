@@ -2,23 +2,23 @@ package com.contriverz.audioplayer;
 
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
-import android.app.PendingIntent;
 import android.content.BroadcastReceiver;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.Intent;
-import android.net.Uri;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
 import android.os.Build;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 import android.support.v4.media.MediaMetadataCompat;
 import android.support.v4.media.session.MediaSessionCompat;
 import android.support.v4.media.session.PlaybackStateCompat;
 import android.util.Log;
 
-import androidx.annotation.NonNull;
-import androidx.core.app.NotificationCompat;
-import androidx.media.app.NotificationCompat.MediaStyle;
-
 import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Plugin;
@@ -26,11 +26,20 @@ import com.getcapacitor.PluginCall;
 import com.getcapacitor.annotation.CapacitorPlugin;
 import com.getcapacitor.PluginMethod;
 import com.google.android.exoplayer2.ExoPlayer;
-import com.google.android.exoplayer2.MediaItem;
-import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.ext.okhttp.OkHttpDataSource;
+import com.google.android.exoplayer2.upstream.DataSourceInputStream;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import org.json.JSONArray;
+import org.json.JSONObject;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 @CapacitorPlugin(name = "AudioPlayer")
 public class AudioPlayerPlugin extends Plugin {
@@ -38,49 +47,128 @@ public class AudioPlayerPlugin extends Plugin {
     private static final String TAG = "AudioPlayerPlugin";
     private static final String CHANNEL_ID = "audio_player_channel";
     private static final int NOTIFICATION_ID = 1;
+    // Shorter tracks seek fine on ExoPlayer's estimate and are not worth reading through
+    private static final long SEEK_INDEX_MIN_DURATION_MS = 10 * 60 * 1000;
 
-    private ExoPlayer exoPlayer;
-    private List<AudioTrack> trackQueue = new ArrayList<>();
-    private int currentIndex = 0;
-    private String repeatMode = "none";
-    private boolean shuffleMode = false;
+    // Queue, repeat and shuffle live in the engine, this class only adapts it to Capacitor and Android
+    private ExoPlayerBackend backend;
+    private PlaybackEngine engine;
     private Handler mainHandler;
+    // Owns the player, the engine and every command. Same as mainHandler unless "playbackThread" is set.
+    private Handler playbackHandler;
+    private HandlerThread playbackThread;
     private MediaSessionCompat mediaSession;
-
-    private long currentPlaybackPosition = 0;
-    private boolean isCurrentlyPlaying = false;
+    private NetworkClient network;
+    private MediaCache mediaCache;
+    private PrefetchManager prefetchManager;
+    private QueueFileLoader queueFileLoader;
+    private UriResolver uriResolver;
+    private OfflineDownloader downloader;
+    private ProfileLoadControl loadControl;
+    private SeekIndexStore seekIndex;
+    private SessionStore session;
+    private WaveformLoader waveformLoader;
+    // Set once ensureServices() has built everything above that touches disk or the network
+    private volatile boolean servicesReady;
+    private boolean seekIndexEnabled;
+    private boolean persistSession;
+    // Set while warmUp() builds the player in the background, taken over by ensurePlayer()
+    private Future<ExoPlayer> warmingPlayer;
+    // Queue and position of a player released under memory pressure, picked up by ensurePlayer()
+    private PlaybackEngine.Snapshot releasedSnapshot;
+    // The profile to go back to once the app is in front again, set while buffers are shrunk
+    private BufferProfile profileBeforeTrim;
+    // Paused this long, the player is released into releasedSnapshot. 0 keeps it.
+    private long idleTimeoutMs;
+    private final Runnable idleRunnable = this::releaseIdlePlayer;
+    private int playerState = PlayerBackend.STATE_IDLE;
+    private ArtworkLoader artworkLoader;
+    private NotificationController notificationController;
+    private final PlaybackMetrics metrics = new PlaybackMetrics();
+
+    // Anchor mode replaces the 500 ms playerStateChange stream with positionAnchor events
+    private boolean anchorMode = false;
+    private final PositionAnchorTracker anchorTracker = new PositionAnchorTracker();
 
     // Add these for better state management
     private long seekbarPosition = 0;
     private int lastPlaybackState = PlaybackStateCompat.STATE_PAUSED;
 
-    private Handler positionHandler = new Handler(Looper.getMainLooper());
+    // Seeks from JS are coalesced, only the latest target is applied once the playback thread gets to it
+    private final Object seekLock = new Object();
+    private long pendingSeekMs = -1;
+    private boolean pendingSeekScrubbing;
+    private final List<PluginCall> pendingSeekCalls = new ArrayList<>();
+    // Set while a scrubber is dragged, position reporting waits for the release seek
+    private boolean scrubbing = false;
+
+    // Set while execute() applies a batch, state events wait for its end
+    private boolean batching;
+    private boolean batchTrackChanged;
+    private float volume = 1f;
+
+    private final ComponentCallbacks2 memoryCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            onPlaybackThread(() -> handleMemoryPressure(level));
+        }
+
+        @Override
+        public void onLowMemory() {
+            onPlaybackThread(() -> handleMemoryPressure(TRIM_MEMORY_COMPLETE));
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+    };
+
+    private long nextTickDueAt = -1;
     private Runnable positionRunnable = new Runnable() {
         private long lastSentPosition = -1;
         private long lastNotificationUpdate = 0;
 
         @Override
         public void run() {
-            if (exoPlayer != null && !trackQueue.isEmpty() && currentIndex < trackQueue.size()) {
-                long position = exoPlayer.getCurrentPosition();
-                long duration = exoPlayer.getDuration();
+            if (nextTickDueAt >= 0) {
+                metrics.onTick(SystemClock.uptimeMillis() - nextTickDueAt);
+                nextTickDueAt = -1;
+            }
+            AudioTrack track = engine != null ? engine.getCurrentTrack() : null;
+            if (track != null) {
+                long position = backend.getPositionMs();
+                long duration = backend.getDurationMs();
 
-                currentPlaybackPosition = position;
                 seekbarPosition = position; // Track for MediaSession
 
-                boolean isPlaying = exoPlayer.isPlaying();
+                boolean isPlaying = backend.isPlaying();
+                // Batched by the store, this only replaces the pending state
+                if (isPlaying) saveSession();
+
+                if (anchorMode) {
+                    // JS extrapolates on its own, only correct it on heartbeat or drift
+                    float rate = backend.getRate();
+                    String reason = anchorTracker.anchorDue(SystemClock.elapsedRealtime(), position, isPlaying, rate);
+                    if (PositionAnchorTracker.REASON_DRIFT.equals(reason)) {
+                        metrics.onDriftAnchor();
+                    }
+                    if (reason != null) {
+                        sendPositionAnchor(reason);
+                    }
+                    // Paused position doesn't move, ticks resume on the next play
+                    if (isPlaying) {
+                        scheduleTick(anchorTracker.nextTickDelayMs(SystemClock.elapsedRealtime()));
+                    }
+                    return;
+                }
 
                 // Always update JS side when playing, less frequently when paused
-                boolean shouldUpdateJS = isPlaying || (position != lastSentPosition);
+                boolean shouldUpdateJS = !scrubbing && (isPlaying || (position != lastSentPosition));
                 if (shouldUpdateJS) {
                     lastSentPosition = position;
 
-                    JSObject data = new JSObject();
-                    data.put("isPlaying", isPlaying);
-                    data.put("position", position / 1000.0);
-                    data.put("duration", duration > 0 ? duration / 1000.0 : 0);
-                    data.put("trackId", trackQueue.get(currentIndex).getId());
-                    notifyListeners("playerStateChange", data);
+                    emit("playerStateChange", PlayerStatePayload.playerState(
+                            track.getId(), isPlaying, position, duration));
 
                     Log.d(TAG, "🔄 Position: " + position + "ms, Playing: " + isPlaying);
                 }
@@ -96,18 +184,18 @@ public class AudioPlayerPlugin extends Plugin {
                     }
                 }
 
-                // Update notification less frequently
+                // Cheap when nothing visible changed, the controller skips the repost
                 long currentTime = System.currentTimeMillis();
                 if (currentTime - lastNotificationUpdate > 3000) {
                     lastNotificationUpdate = currentTime;
-                    showNotification(trackQueue.get(currentIndex));
+                    showNotification(track);
                 }
 
                 // Schedule next update based on play state
                 if (isPlaying) {
-                    positionHandler.postDelayed(this, 500); // Fast updates when playing
+                    scheduleTick(500); // Fast updates when playing
                 } else {
-                    positionHandler.postDelayed(this, 1000); // Slow updates when paused
+                    scheduleTick(1000); // Slow updates when paused
                 }
             }
         }
@@ -115,9 +203,13 @@ public class AudioPlayerPlugin extends Plugin {
 
     @PluginMethod
     public void forcePositionUpdate(PluginCall call) {
-        mainHandler.post(() -> {
-            if (exoPlayer != null) {
-                sendPlayerState();
+        playbackHandler.post(() -> {
+            if (backend != null) {
+                if (anchorMode) {
+                    sendPositionAnchor("sync");
+                } else {
+                    sendPlayerState();
+                }
                 call.resolve();
             } else {
                 call.reject("Player is null");
@@ -126,24 +218,22 @@ public class AudioPlayerPlugin extends Plugin {
     }
 
     private void updateMediaSessionPosition(long position) {
-        if (mediaSession == null || exoPlayer == null) return;
+        if (mediaSession == null || backend == null) return;
 
-        boolean isPlaying = exoPlayer.isPlaying();
+        boolean isPlaying = backend.isPlaying();
         int state = isPlaying ? PlaybackStateCompat.STATE_PLAYING : PlaybackStateCompat.STATE_PAUSED;
         this.lastPlaybackState = state;
 
-        long duration = exoPlayer.getDuration();
-        if (duration <= 0 && !trackQueue.isEmpty()) {
-            AudioTrack track = trackQueue.get(currentIndex);
-            if (track.getDuration() > 0) {
-                duration = (long)(track.getDuration() * 1000);
-            }
+        long duration = backend.getDurationMs();
+        AudioTrack track = engine.getCurrentTrack();
+        if (duration <= 0 && track != null && track.getDuration() > 0) {
+            duration = (long)(track.getDuration() * 1000);
         }
         if (duration <= 0) {
             duration = 180000;
         }
 
-        long bufferedPosition = exoPlayer.getBufferedPosition();
+        long bufferedPosition = backend.getBufferedPositionMs();
         if (bufferedPosition <= position) {
             bufferedPosition = duration;
         }
@@ -157,18 +247,18 @@ public class AudioPlayerPlugin extends Plugin {
                                 PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS |
                                 PlaybackStateCompat.ACTION_SEEK_TO
                 )
-                .setState(state, position, isPlaying ? 1.0f : 0f, System.currentTimeMillis())
+                .setState(state, position, isPlaying ? backend.getRate() : 0f, System.currentTimeMillis())
                 .setBufferedPosition(bufferedPosition);
 
-        mediaSession.setPlaybackState(stateBuilder.build());
+        PlaybackStateCompat playbackState = stateBuilder.build();
+        runOnMain(() -> mediaSession.setPlaybackState(playbackState));
     }
 
     private void updateMediaMetadata() {
-        if (mediaSession == null || trackQueue.isEmpty() || currentIndex >= trackQueue.size()) return;
+        AudioTrack track = engine != null ? engine.getCurrentTrack() : null;
+        if (mediaSession == null || track == null) return;
 
-        AudioTrack track = trackQueue.get(currentIndex);
-
-        long duration = exoPlayer != null ? exoPlayer.getDuration() : 0;
+        long duration = backend.getDurationMs();
         long finalDuration = duration > 0 ? duration :
                 (track.getDuration() > 0 ? (long)(track.getDuration() * 1000) : 180000);
 
@@ -178,58 +268,375 @@ public class AudioPlayerPlugin extends Plugin {
                 .putString(MediaMetadataCompat.METADATA_KEY_ALBUM, track.getAlbum())
                 .putLong(MediaMetadataCompat.METADATA_KEY_DURATION, finalDuration);
 
-        mediaSession.setMetadata(metadataBuilder.build());
+        MediaMetadataCompat metadata = metadataBuilder.build();
+        runOnMain(() -> mediaSession.setMetadata(metadata));
     }
 
     @Override
     public void load() {
         super.load();
         mainHandler = new Handler(Looper.getMainLooper());
+        if (getConfig().getBoolean("playbackThread", false)) {
+            // Keeps commands and position ticks clear of WebView work on main
+            playbackThread = new HandlerThread("AudioPlayback", Process.THREAD_PRIORITY_AUDIO);
+            playbackThread.start();
+            playbackHandler = new Handler(playbackThread.getLooper());
+            Log.d(TAG, "🧵 Playback thread enabled");
+        } else {
+            playbackHandler = mainHandler;
+        }
+
+        queueFileLoader = new QueueFileLoader(getContext(), playbackHandler);
+        BufferProfile profile = BufferProfile.named(getConfig().getString("bufferProfile", BufferProfile.DEFAULT));
+        loadControl = new ProfileLoadControl(profile != null ? profile : BufferProfile.named(BufferProfile.DEFAULT));
+        getContext().getApplicationContext().registerComponentCallbacks(memoryCallbacks);
+        idleTimeoutMs = Math.max(0, getConfig().getInt("idleTimeout", 0)) * 1000L;
+        seekIndexEnabled = getConfig().getBoolean("seekIndex", true);
+        persistSession = getConfig().getBoolean("persistSession", false);
+
+        // Player, MediaSession and notification channel wait for the first command that needs them,
+        // and so do caches, downloads and stores, see ensureServices()
+    }
+
+    /**
+     * Builds what touches disk or the network on first use: the HTTP client, media cache,
+     * downloads and their index, artwork, waveform, seek index and session stores. Kept
+     * out of load() so plugin load stays cheap on the main thread. Runs on whichever
+     * thread needs them first, the playback thread, warm-up or a plugin call.
+     */
+    private synchronized void ensureServices() {
+        if (servicesReady) return;
+
+        long startedAt = SystemClock.elapsedRealtime();
+        // One pool of connections for audio, downloads and artwork
+        network = new NetworkClient(metrics);
+        network.configure(
+                getConfig().getInt("connectTimeout", NetworkClient.DEFAULT_CONNECT_TIMEOUT_MS / 1000) * 1000,
+                getConfig().getInt("readTimeout", NetworkClient.DEFAULT_READ_TIMEOUT_MS / 1000) * 1000);
+        artworkLoader = new ArtworkLoader(getContext(), network);
+        mediaCache = new MediaCache(getContext(), new OkHttpDataSource.Factory(network.getCallFactory()));
+        prefetchManager = new PrefetchManager(mediaCache);
+        downloader = new OfflineDownloader(new File(getContext().getFilesDir(), "audio-offline"), network,
+                new OfflineDownloader.Listener() {
+                    @Override
+                    public void onProgress(String id, long bytesDownloaded, long totalBytes) {
+                        emitDownload(id, OfflineDownloader.STATE_DOWNLOADING, bytesDownloaded, totalBytes, null);
+                    }
+
+                    @Override
+                    public void onComplete(String id, File file) {
+                        Log.d(TAG, "⬇️ Downloaded " + id);
+                        emitDownload(id, OfflineDownloader.STATE_COMPLETE, file.length(), file.length(), null);
+                    }
+
+                    @Override
+                    public void onError(String id, String message) {
+                        Log.e(TAG, "⬇️ " + id + ": " + message);
+                        emitDownload(id, "error", -1, -1, message);
+                    }
+
+                    @Override
+                    public void onEvicted(String id) {
+                        Log.d(TAG, "🧹 Evicted download " + id);
+                        emitDownload(id, "evicted", -1, -1, null);
+                    }
+                });
+        uriResolver = new UriResolver(downloader);
+        waveformLoader = new WaveformLoader(getContext(), new File(getContext().getCacheDir(), "audio-waveforms"),
+                network);
+        if (seekIndexEnabled) {
+            seekIndex = new SeekIndexStore(new File(getContext().getCacheDir(), "audio-seek-index"));
+        }
+        if (persistSession) {
+            session = new SessionStore(new File(getContext().getFilesDir(), "audio-session"));
+        }
+
+        servicesReady = true;
+        Log.d(TAG, "🧰 Services ready in " + (SystemClock.elapsedRealtime() - startedAt) + "ms");
+    }
+
+    /**
+     * Posts a command that needs the player, building it first if this is the first one.
+     */
+    private void runWithPlayer(Runnable command) {
+        playbackHandler.post(() -> {
+            ensurePlayer();
+            command.run();
+        });
+    }
+
+    private ExoPlayer buildPlayer() {
+        return ExoPlayerBackend.buildPlayer(getContext(), mediaCache.getPlaybackDataSourceFactory(), loadControl,
+                playbackHandler.getLooper(), seekIndex);
+    }
+
+    /**
+     * Builds the player, MediaSession and engine on first use. Playback thread only.
+     */
+    private void ensurePlayer() {
+        if (engine != null) return;
+
+        long startedAt = SystemClock.elapsedRealtime();
+        ensureServices();
+        ExoPlayer player = null;
+        if (warmingPlayer != null) {
+            // Already being built by warmUp(), waiting is cheaper than starting over
+            try {
+                player = warmingPlayer.get();
+            } catch (Exception e) {
+                Log.e(TAG, "Warm-up failed, building the player now", e);
+            }
+            warmingPlayer = null;
+        }
+        if (player == null) {
+            player = buildPlayer();
+        }
+
+        if (mediaSession == null) {
+            // Kept across a release under memory pressure, lock screen controls stay put
+            setupMediaSession();
+            createNotificationChannel();
+        }
+        backend = new ExoPlayerBackend(player, uriResolver);
+        backend.setVolume(volume);
+        playerState = PlayerBackend.STATE_IDLE;
+        backend.getPlayer().addAnalyticsListener(metrics);
+        engine = new PlaybackEngine(backend);
+        engine.getQueue().setCompactThreshold(
+                getConfig().getInt("compactQueueThreshold", TrackQueue.DEFAULT_COMPACT_THRESHOLD));
+        engine.setListener(new PlaybackEngine.Listener() {
+            @Override
+            public void onTrackChanged(AudioTrack track, boolean automatic) {
+                // Auto-advance is a gapless hand-over inside the backend, JS only gets told about it
+                Log.d(TAG, "⏭️ Now playing: " + track.getTitle() + (automatic ? " (auto)" : ""));
+                seekbarPosition = 0;
+
+                if (!automatic) {
+                    // A fresh load, prefetch restarts once it is READY
+                    prefetchManager.cancel();
+                    metrics.onTrackStart(track.getId());
+                    // A drag on the old track never gets its release seek
+                    endScrubbing();
+                }
+                updateMediaMetadata();
+                updateMediaSessionPosition(0);
+                notifyTrackChange(track);
+                showNotification(track);
+                if (automatic) schedulePrefetch();
+                if (anchorMode) sendPositionAnchor("trackChange");
+                saveSession();
+            }
+
+            @Override
+            public void onQueueEnded() {
+                handleTrackCompletion();
+            }
+
+            @Override
+            public void onNoTrack(String direction) {
+                // Nothing queued natively, let JS decide what comes next
+                JSObject data = new JSObject();
+                data.put("action", direction);
+                emit("trackChange", data);
+            }
 
-        exoPlayer = new ExoPlayer.Builder(getContext()).build();
-        exoPlayer.addListener(new Player.Listener() {
             @Override
             public void onPlaybackStateChanged(int state) {
                 Log.d(TAG, "🎵 PlaybackState: " + state);
+                playerState = state;
 
                 switch (state) {
-                    case Player.STATE_READY:
-                        if (exoPlayer.getDuration() > 0) {
+                    case PlayerBackend.STATE_BUFFERING:
+                        if (anchorMode) sendPositionAnchor("buffering");
+                        break;
+                    case PlayerBackend.STATE_READY:
+                        if (backend.getDurationMs() > 0) {
                             updateMediaMetadata();
                         }
-                        break;
-                    case Player.STATE_ENDED:
-                        handleTrackCompletion();
+                        if (anchorMode) sendPositionAnchor("ready");
+                        // Current track has its initial buffer, now warm what comes next
+                        schedulePrefetch();
+                        buildSeekIndex();
                         break;
                 }
             }
 
+            @Override
+            public void onSeek() {
+                if (anchorMode && !scrubbing) sendPositionAnchor("seek");
+            }
+
+            @Override
+            public void onRateChanged(float rate) {
+                updateMediaSessionPosition(backend.getPositionMs());
+                if (anchorMode) sendPositionAnchor("rate");
+            }
+
             @Override
             public void onIsPlayingChanged(boolean playing) {
                 Log.d(TAG, "🎵 IsPlayingChanged: " + playing);
-                isCurrentlyPlaying = playing;
 
                 // Force immediate updates when play state changes
-                mainHandler.post(() -> {
-                    long position = exoPlayer.getCurrentPosition();
+                playbackHandler.post(() -> {
+                    if (engine == null) return;
+                    long position = backend.getPositionMs();
                     seekbarPosition = position;
                     updateMediaSessionPosition(position);
                     sendPlayerState();
-                    if (!trackQueue.isEmpty()) {
-                        showNotification(trackQueue.get(currentIndex));
+                    if (anchorMode) sendPositionAnchor(playing ? "play" : "pause");
+                    AudioTrack track = engine.getCurrentTrack();
+                    if (track != null) {
+                        showNotification(track);
                     }
+                    scheduleIdleRelease();
                 });
             }
 
             @Override
-            public void onPlayerError(@NonNull com.google.android.exoplayer2.PlaybackException error) {
-                Log.e(TAG, "🎵 Player error: " + error.getMessage());
-                notifyError("Playback error: " + error.getMessage());
+            public void onError(String message) {
+                Log.e(TAG, "🎵 Player error: " + message);
+                notifyError("Playback error: " + message);
             }
         });
 
-        setupMediaSession();
-        createNotificationChannel();
+        if (releasedSnapshot != null) {
+            // Mostly served from the media cache, the bytes around the position were just played
+            metrics.onResumeStart();
+            engine.restore(releasedSnapshot);
+            releasedSnapshot = null;
+            seekbarPosition = backend.getPositionMs();
+            Log.d(TAG, "♻️ Restored queue of " + engine.getQueue().size() + " at " + seekbarPosition + "ms");
+            runOnMain(() -> {
+                if (notificationController != null) notificationController.setOngoing(true);
+            });
+        }
+
+        updateMediaSessionPosition(seekbarPosition);
+        scheduleIdleRelease();
+        Log.d(TAG, "🎛️ Player ready in " + (SystemClock.elapsedRealtime() - startedAt) + "ms");
+    }
+
+    /**
+     * Drops the player and engine, keeping only a snapshot for ensurePlayer() to restore
+     * from. MediaSession and notification stay, so playback resumes from either.
+     */
+    private void releasePlayer() {
+        if (engine == null) return;
+
+        releasedSnapshot = engine.snapshot();
+        queueFileLoader.cancel();
+        prefetchManager.cancel();
+        stopPositionUpdates();
+        playbackHandler.removeCallbacks(idleRunnable);
+        endScrubbing();
+        engine.release();
+        engine = null;
+        backend = null;
+        metrics.onPlayerReleased();
+        // Nothing holds resources any more, the user may swipe the notification away
+        runOnMain(() -> {
+            if (notificationController != null) notificationController.setOngoing(false);
+        });
+        Log.d(TAG, "🧹 Player released, queue of " + releasedSnapshot.getQueue().size() + " kept");
+    }
+
+    /**
+     * Paused, stopped or past the end of the queue. ExoPlayer keeps playWhenReady through the last two.
+     */
+    private boolean isIdle() {
+        return !backend.getPlayWhenReady()
+                || playerState == PlayerBackend.STATE_IDLE || playerState == PlayerBackend.STATE_ENDED;
+    }
+
+    private void releaseIdlePlayer() {
+        if (engine == null || !isIdle()) return;
+        Log.d(TAG, "💤 Paused for " + idleTimeoutMs + "ms");
+        releasePlayer();
+    }
+
+    /**
+     * Restarts the idle countdown while paused or stopped, cancels it otherwise.
+     */
+    private void scheduleIdleRelease() {
+        playbackHandler.removeCallbacks(idleRunnable);
+        if (idleTimeoutMs > 0 && engine != null && isIdle()) {
+            playbackHandler.postDelayed(idleRunnable, idleTimeoutMs);
+        }
+    }
+
+    @PluginMethod
+    public void setIdleTimeout(PluginCall call) {
+        Double seconds = call.getDouble("seconds");
+        if (seconds == null || seconds < 0) {
+            call.reject("seconds must be zero or a positive number");
+            return;
+        }
+        playbackHandler.post(() -> {
+            idleTimeoutMs = (long) (seconds * 1000);
+            scheduleIdleRelease();
+            call.resolve();
+        });
+    }
+
+    /**
+     * Frees what the level calls for, mildest first. Playback thread only.
+     *
+     * Caches go at every level, buffers shrink from RUNNING_LOW and on the LRU levels, and
+     * the player itself is only released on critical levels while nothing is playing.
+     */
+    private void handleMemoryPressure(int level) {
+        JSArray actions = new JSArray();
+
+        if (servicesReady) {
+            artworkLoader.clearMemory();
+            uriResolver.clearCache();
+            network.evictIdle();
+        }
+        actions.put("dropCaches");
+
+        boolean low = level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                && level != ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN;
+        BufferProfile lowMemory = BufferProfile.named(BufferProfile.LOW_MEMORY);
+        if (low && profileBeforeTrim == null
+                && loadControl.getProfile().targetBufferBytes > lowMemory.targetBufferBytes) {
+            profileBeforeTrim = loadControl.getProfile();
+            loadControl.setProfile(lowMemory);
+            actions.put("shrinkBuffers");
+        }
+
+        boolean critical = level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL
+                || level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE;
+        if (critical && engine != null && isIdle()) {
+            releasePlayer();
+            actions.put("releasePlayer");
+        }
+
+        Log.d(TAG, "🧠 Memory pressure " + level + ": " + actions);
+        JSObject data = new JSObject();
+        data.put("level", level);
+        data.put("actions", actions);
+        emit("memoryPressure", data);
+    }
+
+    @PluginMethod
+    public void warmUp(PluginCall call) {
+        playbackHandler.post(() -> {
+            if (engine != null || warmingPlayer != null) {
+                runWithPlayer(call::resolve);
+                return;
+            }
+
+            // Renderer and codec setup happens off the playback thread, attaching the player stays on it
+            FutureTask<ExoPlayer> warming = new FutureTask<>(() -> {
+                ensureServices();
+                return buildPlayer();
+            });
+            warmingPlayer = warming;
+            new Thread(() -> {
+                warming.run();
+                runWithPlayer(call::resolve);
+            }, "AudioWarmUp").start();
+        });
     }
 
     private void setupMediaSession() {
@@ -238,10 +645,12 @@ public class AudioPlayerPlugin extends Plugin {
         mediaSession.setFlags(MediaSessionCompat.FLAG_HANDLES_MEDIA_BUTTONS |
                 MediaSessionCompat.FLAG_HANDLES_TRANSPORT_CONTROLS);
 
+        // Transport callbacks land on the playback thread, next to the engine they drive
         mediaSession.setCallback(new MediaSessionCompat.Callback() {
             @Override
             public void onPlay() {
                 Log.d(TAG, "MediaSession: onPlay");
+                ensurePlayer();
                 playInternal();
             }
 
@@ -254,37 +663,30 @@ public class AudioPlayerPlugin extends Plugin {
             @Override
             public void onSkipToNext() {
                 Log.d(TAG, "MediaSession: onSkipToNext");
-                nextInternal();
+                ensurePlayer();
+                engine.next();
             }
 
             @Override
             public void onSkipToPrevious() {
                 Log.d(TAG, "MediaSession: onSkipToPrevious");
-                previousInternal();
+                ensurePlayer();
+                engine.previous();
             }
 
             @Override
             public void onSeekTo(long pos) {
                 Log.d(TAG, "MediaSession: onSeekTo " + pos);
-                if (exoPlayer != null) {
-                    seekbarPosition = pos;
-                    exoPlayer.seekTo(pos);
-                    updateMediaSessionPosition(pos);
-                    sendPlayerState();
-                }
+                seekInternal(pos);
             }
 
             @Override
             public void onStop() {
                 Log.d(TAG, "MediaSession: onStop");
-                if (exoPlayer != null) {
-                    exoPlayer.stop();
-                    stopPositionUpdates();
-                }
+                stopInternal();
             }
-        });
+        }, playbackHandler);
 
-        updateMediaSessionPosition(0);
         mediaSession.setActive(true);
     }
 
@@ -295,20 +697,11 @@ public class AudioPlayerPlugin extends Plugin {
         }
 
         try {
-            String id = json.optString("id", "track-" + System.currentTimeMillis());
-            String title = json.optString("title", "Unknown Track");
-            String artist = json.optString("artist", "Unknown Artist");
-            String album = json.optString("album", "Unknown Album");
-            String url = json.optString("url", "");
-            String artwork = json.optString("artwork", "");
-            double duration = json.optDouble("duration", 0.0);
-
-            if (url.isEmpty()) {
+            AudioTrack track = TrackParser.parse(json);
+            if (track == null) {
                 Log.e(TAG, "parseTrack: URL is empty");
-                return null;
             }
-
-            return new AudioTrack(id, title, artist, album, duration, url, artwork);
+            return track;
         } catch (Exception e) {
             Log.e(TAG, "Track parsing error", e);
             return null;
@@ -316,13 +709,52 @@ public class AudioPlayerPlugin extends Plugin {
     }
 
     @PluginMethod
-    public void prepare(PluginCall call) {
-        mainHandler.post(() -> {
-            trackQueue.clear();
-            currentIndex = 0;
-            currentPlaybackPosition = 0;
-            seekbarPosition = 0;
+    public void initialize(PluginCall call) {
+        // Builds the player now instead of on the first prepare, buffering options apply to it right away
+        runWithPlayer(() -> applyBufferProfile(call));
+    }
+
+    @PluginMethod
+    public void setBufferProfile(PluginCall call) {
+        // Memory pressure and resume swap profiles on the playback thread too
+        playbackHandler.post(() -> applyBufferProfile(call));
+    }
 
+    private void applyBufferProfile(PluginCall call) {
+        String name = call.getString("bufferProfile");
+        // Overrides apply to the chosen profile, not to the one memory pressure swapped in
+        BufferProfile current = profileBeforeTrim != null ? profileBeforeTrim : loadControl.getProfile();
+        BufferProfile profile = name != null ? BufferProfile.named(name) : current;
+        if (profile == null) {
+            call.reject("Unknown buffer profile: " + name);
+            return;
+        }
+
+        JSObject buffer = call.getObject("buffer");
+        if (buffer != null) {
+            try {
+                profile = profile.withOverrides(
+                        buffer.getInteger("minBufferMs"),
+                        buffer.getInteger("maxBufferMs"),
+                        buffer.getInteger("bufferForPlaybackMs"),
+                        buffer.getInteger("bufferForPlaybackAfterRebufferMs"),
+                        buffer.getInteger("targetBufferBytes"));
+            } catch (IllegalArgumentException e) {
+                call.reject(e.getMessage());
+                return;
+            }
+        }
+
+        // Takes effect on the player's next buffering decision, no rebuild needed
+        loadControl.setProfile(profile);
+        profileBeforeTrim = null;
+        Log.d(TAG, "📶 Buffer profile " + profile.name + ", ceiling " + profile.targetBufferBytes + " bytes");
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void prepare(PluginCall call) {
+        runWithPlayer(() -> {
             JSObject trackData = call.getObject("track");
             AudioTrack track = null;
 
@@ -340,9 +772,7 @@ public class AudioPlayerPlugin extends Plugin {
             }
 
             if (track != null) {
-                trackQueue.add(track);
-                loadCurrentTrack();
-                Log.d(TAG, "✅ Prepared: " + track.getTitle());
+                prepareInternal(track);
                 call.resolve();
             } else {
                 Log.e(TAG, "❌ No valid track data");
@@ -351,216 +781,1001 @@ public class AudioPlayerPlugin extends Plugin {
         });
     }
 
-    private void loadCurrentTrack() {
-        if (trackQueue.isEmpty() || currentIndex < 0 || currentIndex >= trackQueue.size()) {
-            notifyError("No track to play");
+    @PluginMethod
+    public void setQueue(PluginCall call) {
+        runWithPlayer(() -> {
+            List<AudioTrack> tracks = parseTracks(call.getArray("tracks"));
+            if (tracks.isEmpty()) {
+                call.reject("No valid tracks provided");
+                return;
+            }
+
+            setQueueInternal(tracks, call.getInt("startIndex", 0));
+            call.resolve();
+        });
+    }
+
+    private void prepareInternal(AudioTrack track) {
+        queueFileLoader.cancel();
+        engine.setQueue(Collections.singletonList(track), 0);
+        if (session != null) session.queueSet(Collections.singletonList(track));
+        Log.d(TAG, "✅ Prepared: " + track.getTitle());
+    }
+
+    private void setQueueInternal(List<AudioTrack> tracks, int startIndex) {
+        queueFileLoader.cancel();
+        engine.setQueue(tracks, startIndex);
+        if (session != null) session.queueSet(tracks);
+        Log.d(TAG, "✅ Queue set: " + tracks.size() + " tracks, starting at " + engine.getCurrentIndex());
+    }
+
+    /**
+     * Applies a list of commands in one go on the playback thread. Every command is checked
+     * before the first is applied, so a bad one leaves the player untouched. State events
+     * from inside the batch are held back, one trackChange and one playerStateChange (or
+     * positionAnchor) at the end describe where it ended up.
+     */
+    @PluginMethod
+    public void execute(PluginCall call) {
+        JSArray array = call.getArray("commands");
+        if (array == null) {
+            call.reject("commands is required");
             return;
         }
 
-        AudioTrack track = trackQueue.get(currentIndex);
-        try {
-            Log.d(TAG, "🎵 Loading: " + track.getTitle());
-
-            stopPositionUpdates();
-            currentPlaybackPosition = 0;
-            seekbarPosition = 0;
+        List<Runnable> commands = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject command = array.optJSONObject(i);
+            try {
+                if (command == null) throw new IllegalArgumentException("not an object");
+                commands.add(parseCommand(command));
+            } catch (IllegalArgumentException e) {
+                call.reject("Command " + i + " (" + (command != null ? command.optString("type") : "") + "): "
+                        + e.getMessage());
+                return;
+            }
+        }
 
-            exoPlayer.stop();
-            exoPlayer.clearMediaItems();
+        runWithPlayer(() -> {
+            batching = true;
+            batchTrackChanged = false;
+            try {
+                for (Runnable command : commands) {
+                    command.run();
+                }
+            } finally {
+                batching = false;
+            }
 
-            Uri trackUri;
-            String url = track.getUrl();
+            AudioTrack track = engine.getCurrentTrack();
+            if (batchTrackChanged && track != null) notifyTrackChange(track);
+            if (anchorMode) {
+                sendPositionAnchor("execute");
+            } else {
+                sendPlayerState();
+            }
 
-            if (url.startsWith("http")) {
-                // Remote URL
-                trackUri = Uri.parse(url);
-                Log.d(TAG, "🌐 Loading remote URL: " + url);
-            } else if (url.startsWith("file://")) {
-                // File URI - need to handle properly
-                try {
-                    // Remove "file://" prefix and handle the path
-                    String filePath = url.replace("file://", "");
-                    File file = new File(filePath);
+            JSObject result = new JSObject();
+            result.put("applied", commands.size());
+            call.resolve(result);
+        });
+    }
 
-                    if (file.exists()) {
-                        trackUri = Uri.fromFile(file);
-                        Log.d(TAG, "📁 Loading local file: " + file.getAbsolutePath());
+    /**
+     * The command as it will run on the playback thread, or IllegalArgumentException saying what is wrong with it.
+     */
+    private Runnable parseCommand(JSONObject command) {
+        String type = command.optString("type");
+        switch (type) {
+            case "prepare": {
+                AudioTrack track = TrackParser.parse(command.optJSONObject("track"));
+                if (track == null) throw new IllegalArgumentException("No valid track data provided");
+                return () -> prepareInternal(track);
+            }
+            case "setQueue": {
+                List<AudioTrack> tracks = parseTracks(command.optJSONArray("tracks"));
+                if (tracks.isEmpty()) throw new IllegalArgumentException("No valid tracks provided");
+                int startIndex = command.optInt("startIndex", 0);
+                return () -> setQueueInternal(tracks, startIndex);
+            }
+            case "play":
+                return this::playInternal;
+            case "pause":
+                return this::pauseInternal;
+            case "stop":
+                return this::stopInternal;
+            case "next":
+                return () -> engine.next();
+            case "previous":
+                return () -> engine.previous();
+            case "seekTo": {
+                double position = command.optDouble("position", Double.NaN);
+                if (Double.isNaN(position)) throw new IllegalArgumentException("position is required");
+                long positionMs = Math.max(0, (long) (position * 1000));
+                return () -> seekInternal(positionMs);
+            }
+            case "setPlaybackRate": {
+                double rate = command.optDouble("rate", Double.NaN);
+                if (!(rate > 0)) throw new IllegalArgumentException("rate must be a positive number");
+                return () -> {
+                    engine.setRate((float) rate);
+                    saveSession();
+                };
+            }
+            case "setVolume": {
+                double value = command.optDouble("volume", Double.NaN);
+                if (!(value >= 0 && value <= 1)) throw new IllegalArgumentException("volume must be between 0 and 1");
+                return () -> {
+                    volume = (float) value;
+                    backend.setVolume(volume);
+                };
+            }
+            case "setRepeatMode": {
+                String mode = command.optString("mode", PlaybackEngine.REPEAT_NONE);
+                if (!isRepeatMode(mode)) throw new IllegalArgumentException("Invalid repeat mode: " + mode);
+                return () -> {
+                    engine.setRepeatMode(mode);
+                    schedulePrefetch();
+                    saveSession();
+                };
+            }
+            case "setShuffleMode": {
+                boolean enabled = command.optBoolean("enabled", false);
+                Long seed = command.has("seed") ? command.optLong("seed") : null;
+                return () -> {
+                    if (seed != null) {
+                        engine.setShuffle(enabled, seed);
                     } else {
-                        // Try alternative path handling
-                        trackUri = Uri.parse(url);
-                        Log.d(TAG, "⚠️ File not found, trying URI: " + url);
+                        engine.setShuffle(enabled);
                     }
-                } catch (Exception e) {
-                    Log.e(TAG, "❌ File path error, using URI directly", e);
-                    trackUri = Uri.parse(url);
+                    schedulePrefetch();
+                    saveSession();
+                };
+            }
+            default:
+                throw new IllegalArgumentException("Unknown command");
+        }
+    }
+
+    @PluginMethod
+    public void loadQueueFromFile(PluginCall call) {
+        String path = call.getString("path");
+        if (path == null || path.isEmpty()) {
+            call.reject("path is required");
+            return;
+        }
+        int startIndex = call.getInt("startIndex", 0);
+        boolean autoPlay = Boolean.TRUE.equals(call.getBoolean("play", false));
+
+        runWithPlayer(() -> queueFileLoader.load(path, startIndex, new QueueFileLoader.Callback() {
+            @Override
+            public void onTracks(List<AudioTrack> tracks, boolean first) {
+                if (first) {
+                    // Playable while the rest of the file is still being read
+                    engine.setQueue(tracks, startIndex);
+                    if (session != null) session.queueSet(tracks);
+                    if (autoPlay) playInternal();
+                } else {
+                    engine.addTracks(tracks);
+                    if (session != null) session.tracksAdded(tracks);
                 }
-            } else if (url.startsWith("content://")) {
-                // Content URI
-                trackUri = Uri.parse(url);
-                Log.d(TAG, "📦 Loading content URI: " + url);
+            }
+
+            @Override
+            public void onProgress(int loaded, long bytesRead, long totalBytes) {
+                JSObject data = new JSObject();
+                data.put("loaded", loaded);
+                data.put("bytesRead", bytesRead);
+                data.put("totalBytes", totalBytes);
+                data.put("done", false);
+                emit("queueLoadProgress", data);
+            }
+
+            @Override
+            public void onComplete(int loaded, int skipped) {
+                // Batches arrive a chunk at a time, shuffle what is left over the whole file
+                engine.reshuffleUpcoming();
+                schedulePrefetch();
+                Log.d(TAG, "✅ Queue loaded from file: " + loaded + " tracks");
+
+                JSObject data = new JSObject();
+                data.put("loaded", loaded);
+                data.put("skipped", skipped);
+                data.put("done", true);
+                emit("queueLoadProgress", data);
+
+                JSObject result = new JSObject();
+                result.put("loaded", loaded);
+                result.put("skipped", skipped);
+                call.resolve(result);
+            }
+
+            @Override
+            public void onError(String message) {
+                call.reject(message);
+            }
+        }));
+    }
+
+    @PluginMethod
+    public void addTracks(PluginCall call) {
+        runWithPlayer(() -> {
+            List<AudioTrack> tracks = parseTracks(call.getArray("tracks"));
+            if (tracks.isEmpty()) {
+                call.reject("No valid tracks provided");
+                return;
+            }
+
+            engine.addTracks(tracks);
+            if (session != null) session.tracksAdded(tracks);
+            schedulePrefetch();
+            Log.d(TAG, "➕ Added " + tracks.size() + " tracks, queue size " + engine.getQueue().size());
+            call.resolve();
+        });
+    }
+
+    @PluginMethod
+    public void removeTrack(PluginCall call) {
+        playbackHandler.post(() -> {
+            if (releasedSnapshot != null) ensurePlayer();
+            String trackId = call.getString("trackId");
+            // The session journal records its position, the id alone is ambiguous when repeated
+            int index = engine != null && session != null ? engine.getQueue().indexOf(trackId) : -1;
+            int position = index >= 0 ? engine.getQueue().positionOf(index) : -1;
+            if (engine == null || !engine.removeTrack(trackId)) {
+                call.reject("Track not found: " + trackId);
+                return;
+            }
+
+            if (engine.getQueue().isEmpty()) {
+                resetQueue();
             } else {
-                // Assume it's a local file path
-                File file = new File(url);
-                if (file.exists()) {
-                    trackUri = Uri.fromFile(file);
-                    Log.d(TAG, "📁 Loading local file path: " + file.getAbsolutePath());
-                } else {
-                    // Fallback to URI parsing
-                    trackUri = Uri.parse(url);
-                    Log.d(TAG, "⚠️ Using URI fallback: " + url);
+                if (session != null && session.trackRemoved(trackId, position)) saveQueue();
+                schedulePrefetch();
+            }
+            Log.d(TAG, "➖ Removed track " + trackId + ", queue size " + engine.getQueue().size());
+            call.resolve();
+        });
+    }
+
+    @PluginMethod
+    public void skipTo(PluginCall call) {
+        playbackHandler.post(() -> {
+            if (releasedSnapshot != null) ensurePlayer();
+            String trackId = call.getString("trackId");
+            if (engine == null || !engine.skipTo(trackId)) {
+                call.reject("Track not found: " + trackId);
+                return;
+            }
+            call.resolve();
+        });
+    }
+
+    @PluginMethod
+    public void clearQueue(PluginCall call) {
+        playbackHandler.post(() -> {
+            releasedSnapshot = null;
+            if (engine != null) {
+                resetQueue();
+            } else if (session != null) {
+                session.clear();
+            }
+            call.resolve();
+        });
+    }
+
+    @PluginMethod
+    public void getQueue(PluginCall call) {
+        playbackHandler.post(() -> {
+            // A released player is not rebuilt just to be read from
+            TrackQueue queue = engine != null ? engine.getQueue()
+                    : releasedSnapshot != null ? releasedSnapshot.getQueue() : null;
+            JSArray tracks = new JSArray();
+            if (queue != null) {
+                for (AudioTrack track : queue) {
+                    tracks.put(trackToJSObject(track));
                 }
             }
 
-            Log.d(TAG, "🔗 Final URI: " + trackUri.toString());
+            JSObject result = new JSObject();
+            result.put("tracks", tracks);
+            result.put("currentIndex", engine != null ? engine.getCurrentIndex()
+                    : releasedSnapshot != null ? releasedSnapshot.getCurrentIndex() : 0);
+            call.resolve(result);
+        });
+    }
 
-            MediaItem mediaItem = MediaItem.fromUri(trackUri);
-            exoPlayer.setMediaItem(mediaItem);
-            exoPlayer.prepare();
-            exoPlayer.seekTo(0);
+    @PluginMethod
+    public void restoreSession(PluginCall call) {
+        if (!persistSession) {
+            call.reject("Session persistence is off, set persistSession in the plugin config");
+            return;
+        }
 
-            // Delay metadata update to ensure player is ready
-            mainHandler.postDelayed(() -> {
-                updateMediaMetadata();
-                updateMediaSessionPosition(0);
-            }, 100);
+        runWithPlayer(() -> {
+            SessionStore.State state = session.readState();
+            if (state == null) {
+                call.reject("No saved session");
+                return;
+            }
 
-            notifyTrackChange(track);
-            showNotification(track);
+            // The saved track alone is prepared right away, the queue around it is replayed meanwhile
+            queueFileLoader.cancel();
+            prefetchManager.cancel();
+            endScrubbing();
+            TrackQueue placeholder = new TrackQueue();
+            placeholder.add(state.track);
+            engine.restore(new PlaybackEngine.Snapshot(placeholder, 0, state.repeatMode, state.rate, state.positionMs));
+            seekbarPosition = state.positionMs;
+            metrics.onTrackStart(state.track.getId());
+            updateMediaMetadata();
+            updateMediaSessionPosition(seekbarPosition);
+            notifyTrackChange(state.track);
+            showNotification(state.track);
+            session.loadQueue(getConfig().getInt("compactQueueThreshold", TrackQueue.DEFAULT_COMPACT_THRESHOLD),
+                    queue -> onPlaybackThread(() -> adoptRestoredQueue(placeholder, queue, state)));
+            Log.d(TAG, "♻️ Session restored: " + state.track.getTitle() + " at " + state.positionMs + "ms");
+
+            JSObject result = new JSObject();
+            result.put("track", trackToJSObject(state.track));
+            result.put("position", state.positionMs / 1000.0);
+            result.put("repeatMode", state.repeatMode);
+            result.put("shuffle", state.shuffle);
+            call.resolve(result);
+        });
+    }
 
-        } catch (Exception e) {
-            Log.e(TAG, "❌ Load failed: " + e.getMessage(), e);
-            notifyError("Load failed: " + e.getMessage() + " - URL: " + track.getUrl());
+    /**
+     * Swaps the replayed queue in behind the restored track, unless JS changed the queue first.
+     */
+    private void adoptRestoredQueue(TrackQueue placeholder, TrackQueue queue, SessionStore.State state) {
+        if (engine == null || engine.getQueue() != placeholder) return;
+
+        // By saved position first, the first copy of the id only if the journal no longer matches it
+        int index = queue != null ? queue.indexAtPosition(state.queuePosition) : -1;
+        if (index < 0 || !state.track.getId().equals(queue.getId(index))) {
+            index = queue != null ? queue.indexOf(state.track.getId()) : -1;
         }
+        if (placeholder.size() != 1 || index < 0) {
+            // Journal missing, or the queue was added to meanwhile, start over from what is playing
+            if (!placeholder.isEmpty()) saveQueue();
+            return;
+        }
+
+        engine.adoptQueue(queue, index);
+        if (state.shuffle) {
+            // The permutation is not saved, a fresh one still starts from the current track
+            engine.setShuffle(true);
+        }
+        schedulePrefetch();
+        Log.d(TAG, "♻️ Restored queue of " + queue.size());
+
+        JSObject data = new JSObject();
+        data.put("loaded", queue.size());
+        data.put("skipped", 0);
+        data.put("done", true);
+        emit("queueLoadProgress", data);
     }
 
-    private void handleTrackCompletion() {
-        if ("one".equals(repeatMode)) {
-            exoPlayer.seekTo(0);
-            exoPlayer.play();
-        } else {
-            notifyListeners("playbackEnd", new JSObject());
+    @PluginMethod
+    public void setRepeatMode(PluginCall call) {
+        runWithPlayer(() -> {
+            String mode = call.getString("mode", PlaybackEngine.REPEAT_NONE);
+            if (!isRepeatMode(mode)) {
+                call.reject("Invalid repeat mode: " + mode);
+                return;
+            }
+
+            engine.setRepeatMode(mode);
+            schedulePrefetch();
+            saveSession();
+            call.resolve();
+        });
+    }
+
+    private static boolean isRepeatMode(String mode) {
+        return PlaybackEngine.REPEAT_NONE.equals(mode) || PlaybackEngine.REPEAT_ONE.equals(mode)
+                || PlaybackEngine.REPEAT_ALL.equals(mode);
+    }
+
+    @PluginMethod
+    public void setShuffleMode(PluginCall call) {
+        runWithPlayer(() -> {
+            boolean enabled = Boolean.TRUE.equals(call.getBoolean("enabled", false));
+            Long seed = call.getLong("seed");
+            if (seed != null) {
+                engine.setShuffle(enabled, seed);
+            } else {
+                engine.setShuffle(enabled);
+            }
+            schedulePrefetch();
+            saveSession();
+            call.resolve();
+        });
+    }
+
+    @PluginMethod
+    public void setPlaybackRate(PluginCall call) {
+        runWithPlayer(() -> {
+            Double rate = call.getDouble("rate");
+            if (rate == null || rate <= 0) {
+                call.reject("rate must be a positive number");
+                return;
+            }
+            engine.setRate(rate.floatValue());
+            saveSession();
+            call.resolve();
+        });
+    }
+
+    @PluginMethod
+    public void setPositionUpdateMode(PluginCall call) {
+        playbackHandler.post(() -> {
+            String mode = call.getString("mode", "interval");
+            if (!"interval".equals(mode) && !"anchor".equals(mode)) {
+                call.reject("Invalid position update mode: " + mode);
+                return;
+            }
+
+            Double heartbeat = call.getDouble("heartbeatInterval");
+            if (heartbeat != null) {
+                anchorTracker.setHeartbeatMs((long) (heartbeat * 1000));
+            }
+
+            anchorMode = "anchor".equals(mode);
+            anchorTracker.reset();
+            if (anchorMode) {
+                sendPositionAnchor("sync");
+            }
+            if (engine != null && engine.getCurrentTrack() != null) {
+                startPositionUpdates();
+            }
+            call.resolve();
+        });
+    }
+
+    @PluginMethod
+    public void getMetrics(PluginCall call) {
+        JSObject result = metrics.toJSObject();
+        if (Boolean.TRUE.equals(call.getBoolean("reset", false))) {
+            metrics.reset();
+        }
+        call.resolve(result);
+    }
+
+    @PluginMethod
+    public void resetMetrics(PluginCall call) {
+        metrics.reset();
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void configurePrefetch(PluginCall call) {
+        playbackHandler.post(() -> {
+            ensureServices();
+            prefetchManager.configure(
+                    call.getBoolean("enabled", true),
+                    call.getInt("tracks", 2),
+                    call.getInt("seconds", 10),
+                    call.getLong("maxBytes", 4L * 1024 * 1024));
+            schedulePrefetch();
+            call.resolve();
+        });
+    }
+
+    @PluginMethod
+    public void configureCache(PluginCall call) {
+        ensureServices();
+        mediaCache.configure(
+                call.getBoolean("enabled", true),
+                call.getLong("maxBytes", MediaCache.DEFAULT_MAX_BYTES));
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void getCacheInfo(PluginCall call) {
+        ensureServices();
+        JSObject result = new JSObject();
+        result.put("enabled", mediaCache.isEnabled());
+        result.put("maxBytes", mediaCache.getMaxBytes());
+        result.put("usedBytes", mediaCache.getUsedBytes());
+        result.put("entries", mediaCache.getEntryCount());
+        call.resolve(result);
+    }
+
+    @PluginMethod
+    public void clearCache(PluginCall call) {
+        ensureServices();
+        mediaCache.clear(call.getString("trackId"), call::resolve);
+    }
+
+    @PluginMethod
+    public void configureNetwork(PluginCall call) {
+        ensureServices();
+        Double connectTimeout = call.getDouble("connectTimeout");
+        Double readTimeout = call.getDouble("readTimeout");
+        if ((connectTimeout != null && connectTimeout <= 0) || (readTimeout != null && readTimeout <= 0)) {
+            call.reject("Timeouts must be positive numbers of seconds");
+            return;
+        }
+        if (connectTimeout != null || readTimeout != null) {
+            network.configure(
+                    connectTimeout != null ? (int) (connectTimeout * 1000) : network.getConnectTimeoutMs(),
+                    readTimeout != null ? (int) (readTimeout * 1000) : network.getReadTimeoutMs());
+        }
+
+        JSObject headers = call.getObject("headers");
+        if (headers != null) {
+            Map<String, String> values = new HashMap<>();
+            Iterator<String> names = headers.keys();
+            while (names.hasNext()) {
+                String name = names.next();
+                String value = headers.getString(name);
+                if (value != null) values.put(name, value);
+            }
+            network.setHeaders(call.getString("host", NetworkClient.ALL_HOSTS), values);
+        }
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void downloadTracks(PluginCall call) {
+        ensureServices();
+        List<AudioTrack> tracks = parseTracks(call.getArray("tracks"));
+        boolean pinned = Boolean.TRUE.equals(call.getBoolean("pinned", false));
+
+        int queued = 0;
+        for (AudioTrack track : tracks) {
+            if (!track.getUrl().startsWith("http")) continue;
+            downloader.enqueue(track.getId(), track.getUrl(), pinned);
+            queued++;
+        }
+
+        JSObject result = new JSObject();
+        result.put("queued", queued);
+        call.resolve(result);
+    }
+
+    @PluginMethod
+    public void cancelDownload(PluginCall call) {
+        ensureServices();
+        String trackId = call.getString("trackId");
+        if (trackId == null || !downloader.cancel(trackId)) {
+            call.reject("No download in progress for " + trackId);
+            return;
+        }
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void removeDownload(PluginCall call) {
+        ensureServices();
+        String trackId = call.getString("trackId");
+        if (trackId == null || !downloader.remove(trackId)) {
+            call.reject("Download not found: " + trackId);
+            return;
+        }
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void setDownloadPinned(PluginCall call) {
+        ensureServices();
+        String trackId = call.getString("trackId");
+        boolean pinned = Boolean.TRUE.equals(call.getBoolean("pinned", true));
+        if (trackId == null || !downloader.setPinned(trackId, pinned)) {
+            call.reject("Download not found: " + trackId);
+            return;
+        }
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void configureDownloads(PluginCall call) {
+        ensureServices();
+        downloader.configure(
+                call.getInt("maxParallel", downloader.getMaxParallel()),
+                call.getLong("quotaBytes", downloader.getQuotaBytes()));
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void getDownloads(PluginCall call) {
+        ensureServices();
+        JSArray downloads = new JSArray();
+        for (OfflineDownloader.Download download : downloader.getDownloads()) {
+            JSObject data = new JSObject();
+            data.put("trackId", download.id);
+            data.put("state", download.state);
+            data.put("bytesDownloaded", download.bytesDownloaded);
+            data.put("totalBytes", download.totalBytes);
+            data.put("pinned", download.pinned);
+            downloads.put(data);
+        }
+
+        JSObject result = new JSObject();
+        result.put("downloads", downloads);
+        result.put("usedBytes", downloader.getUsedBytes());
+        result.put("quotaBytes", downloader.getQuotaBytes());
+        call.resolve(result);
+    }
+
+    private void emitDownload(String trackId, String state, long bytesDownloaded, long totalBytes, String error) {
+        JSObject data = new JSObject();
+        data.put("trackId", trackId);
+        data.put("state", state);
+        if (bytesDownloaded >= 0) data.put("bytesDownloaded", bytesDownloaded);
+        if (totalBytes >= 0) data.put("totalBytes", totalBytes);
+        if (error != null) data.put("error", error);
+        emit("downloadProgress", data);
+    }
+
+    @PluginMethod
+    public void getWaveform(PluginCall call) {
+        AudioTrack track = parseTrack(call.getObject("track"));
+        if (track == null) {
+            call.reject("track is required");
+            return;
         }
+        int resolution = call.getInt("resolution", WaveformLoader.DEFAULT_RESOLUTION);
+        if (resolution < 1 || resolution > WaveformLoader.MAX_RESOLUTION) {
+            call.reject("resolution must be between 1 and " + WaveformLoader.MAX_RESOLUTION);
+            return;
+        }
+
+        ensureServices();
+        uriResolver.resolve(track, playbackHandler, uri -> waveformLoader.load(track, uri, resolution,
+                new WaveformLoader.Callback() {
+                    @Override
+                    public void onProgress(String id, WaveformPeaks peaks, int from, int to) {
+                        JSObject data = new JSObject();
+                        data.put("trackId", id);
+                        data.put("resolution", peaks.getResolution());
+                        data.put("from", from);
+                        data.put("peaks", peaksToJSArray(peaks, from, to));
+                        data.put("done", to == peaks.getResolution());
+                        emit("waveformProgress", data);
+                    }
+
+                    @Override
+                    public void onComplete(String id, WaveformPeaks peaks) {
+                        JSObject result = new JSObject();
+                        result.put("trackId", id);
+                        result.put("duration", peaks.getDurationUs() / 1_000_000.0);
+                        result.put("peaks", peaksToJSArray(peaks, 0, peaks.getResolution()));
+                        call.resolve(result);
+                    }
+
+                    @Override
+                    public void onError(String id, String message) {
+                        call.reject("Waveform of " + id + " failed: " + message);
+                    }
+                }));
+    }
+
+    @PluginMethod
+    public void cancelWaveform(PluginCall call) {
+        String trackId = call.getString("trackId");
+        if (trackId == null) {
+            call.reject("trackId is required");
+            return;
+        }
+        // Nothing can be decoding before the loader exists
+        if (servicesReady) waveformLoader.cancel(trackId);
+        call.resolve();
+    }
+
+    private static JSArray peaksToJSArray(WaveformPeaks peaks, int from, int to) {
+        JSArray array = new JSArray();
+        for (int i = from; i < to; i++) {
+            // Stored with 8 bits, three decimals lose nothing
+            array.put(Double.valueOf(Math.round(peaks.get(i) * 1000) / 1000.0));
+        }
+        return array;
+    }
+
+    /**
+     * Starts warming the next few items in play order, replacing any prefetch in flight.
+     */
+    private void schedulePrefetch() {
+        if (engine == null || engine.getCurrentTrack() == null) {
+            prefetchManager.cancel();
+            return;
+        }
+        uriResolver.prefetch(engine.upcoming(UriResolver.LOOKAHEAD));
+
+        // Offline copies need no warming
+        List<AudioTrack> upcoming = new ArrayList<>();
+        for (AudioTrack track : engine.upcoming(prefetchManager.getTrackCount())) {
+            if (!downloader.isDownloaded(track.getId())) upcoming.add(track);
+        }
+        prefetchManager.prefetch(upcoming);
+    }
+
+    /**
+     * Indexes a long current track in the background, loads after this one seek by the index.
+     * Cached bytes are read from the media cache, the rest is fetched without being cached.
+     */
+    private void buildSeekIndex() {
+        AudioTrack track = engine.getCurrentTrack();
+        if (seekIndex == null || track == null || backend.getDurationMs() < SEEK_INDEX_MIN_DURATION_MS) return;
+        // Only from bytes already on the device, reading a long track again over the network
+        // doubles its download and competes with playback. A streamed one is indexed on a later
+        // play, once the media cache holds all of it.
+        if (!downloader.isDownloaded(track.getId()) && !mediaCache.isFullyCached(track)) return;
+
+        String id = track.getId();
+        String cacheKey = MediaCache.cacheKey(track);
+        uriResolver.resolve(track, playbackHandler, uri -> seekIndex.build(id, () -> new DataSourceInputStream(
+                mediaCache.getReadDataSourceFactory().createDataSource(),
+                new DataSpec.Builder().setUri(uri).setKey(cacheKey).build())));
+    }
+
+    /**
+     * Hands the current track, position and modes to the session store, which batches the writes.
+     */
+    private void saveSession() {
+        if (session == null || engine == null || engine.getCurrentTrack() == null) return;
+        session.saveState(new SessionStore.State(engine.getCurrentTrack(), engine.getCurrentIndex(),
+                backend.getPositionMs(), engine.getRepeatMode(), engine.isShuffle(), backend.getRate()));
+    }
+
+    /**
+     * Rewrites the saved queue from the engine's, in queue order.
+     */
+    private void saveQueue() {
+        List<AudioTrack> tracks = new ArrayList<>(engine.getQueue().size());
+        for (AudioTrack track : engine.getQueue()) {
+            tracks.add(track);
+        }
+        session.queueSet(tracks);
+    }
+
+    private List<AudioTrack> parseTracks(JSONArray array) {
+        List<AudioTrack> tracks = TrackParser.parseAll(array);
+        if (array != null && tracks.size() < array.length()) {
+            Log.e(TAG, "Skipped " + (array.length() - tracks.size()) + " invalid tracks");
+        }
+        return tracks;
+    }
+
+    private void resetQueue() {
+        queueFileLoader.cancel();
+        prefetchManager.cancel();
+        stopPositionUpdates();
+        engine.clear();
+        seekbarPosition = 0;
+        if (session != null) session.clear();
+    }
+
+    private void handleTrackCompletion() {
+        // Repeat "one"/"all" never reach the end, so this is the end of the queue
+        emit("playbackEnd", new JSObject());
+        scheduleIdleRelease();
     }
 
     @PluginMethod public void play(PluginCall call) {
-        mainHandler.post(() -> {
+        runWithPlayer(() -> {
             playInternal();
             call.resolve();
         });
     }
 
     @PluginMethod public void pause(PluginCall call) {
-        mainHandler.post(() -> {
+        playbackHandler.post(() -> {
             pauseInternal();
             call.resolve();
         });
     }
 
     @PluginMethod public void stop(PluginCall call) {
-        mainHandler.post(() -> {
-            exoPlayer.stop();
-            stopPositionUpdates();
+        playbackHandler.post(() -> {
+            stopInternal();
             call.resolve();
         });
     }
 
     @PluginMethod public void next(PluginCall call) {
-        mainHandler.post(() -> {
-            nextInternal();
+        runWithPlayer(() -> {
+            engine.next();
             call.resolve();
         });
     }
 
     @PluginMethod public void previous(PluginCall call) {
-        mainHandler.post(() -> {
-            previousInternal();
+        runWithPlayer(() -> {
+            engine.previous();
             call.resolve();
         });
     }
 
     @PluginMethod
     public void seekTo(PluginCall call) {
-        mainHandler.post(() -> {
-            Double pos = call.getDouble("position");
-            if (pos != null && exoPlayer != null) {
-                long seekPosition = (long) (pos * 1000);
-                seekbarPosition = seekPosition;
-                exoPlayer.seekTo(seekPosition);
-                updateMediaSessionPosition(seekPosition);
-                sendPlayerState();
-            }
+        Double pos = call.getDouble("position");
+        if (pos == null) {
             call.resolve();
-        });
+            return;
+        }
+        boolean scrub = Boolean.TRUE.equals(call.getBoolean("scrubbing", false));
+
+        boolean schedule;
+        synchronized (seekLock) {
+            // A drain is already queued when a target is pending, it will pick this one up instead
+            schedule = pendingSeekMs < 0;
+            pendingSeekMs = Math.max(0, (long) (pos * 1000));
+            pendingSeekScrubbing = scrub;
+            pendingSeekCalls.add(call);
+        }
+        if (schedule) {
+            playbackHandler.post(this::applyPendingSeek);
+        }
+    }
+
+    private void applyPendingSeek() {
+        long position;
+        boolean scrub;
+        List<PluginCall> calls;
+        synchronized (seekLock) {
+            position = pendingSeekMs;
+            scrub = pendingSeekScrubbing;
+            calls = new ArrayList<>(pendingSeekCalls);
+            pendingSeekMs = -1;
+            pendingSeekCalls.clear();
+        }
+
+        if (position >= 0) {
+            seekInternal(position, scrub);
+        }
+        // Superseded seeks resolve with the one that replaced them
+        for (PluginCall call : calls) {
+            call.resolve();
+        }
     }
 
     private void playInternal() {
-        if (exoPlayer == null) return;
+        if (engine == null) return;
 
         Log.d(TAG, "▶️ Starting playback");
-        exoPlayer.setPlayWhenReady(true);
+        engine.play();
 
         startPositionUpdates();
         sendPlayerState();
 
-        if (!trackQueue.isEmpty()) {
-            showNotification(trackQueue.get(currentIndex));
+        AudioTrack track = engine.getCurrentTrack();
+        if (track != null) {
+            showNotification(track);
         }
     }
 
     private void pauseInternal() {
-        if (exoPlayer == null) return;
+        if (engine == null) return;
 
         Log.d(TAG, "⏸️ Pausing playback");
-        exoPlayer.setPlayWhenReady(false);
+        engine.pause();
+        saveSession();
 
         // Don't stop updates completely, just let runnable handle slower updates
         startPositionUpdates();
         sendPlayerState();
 
-        if (!trackQueue.isEmpty()) {
-            showNotification(trackQueue.get(currentIndex));
+        AudioTrack track = engine.getCurrentTrack();
+        if (track != null) {
+            showNotification(track);
         }
     }
 
-    private void nextInternal() {
-        JSObject data = new JSObject();
-        data.put("action", "next");
-        notifyListeners("trackChange", data);
+    private void stopInternal() {
+        if (engine == null) return;
+
+        engine.stop();
+        endScrubbing();
+        stopPositionUpdates();
+        saveSession();
     }
 
-    private void previousInternal() {
-        JSObject data = new JSObject();
-        data.put("action", "previous");
-        notifyListeners("trackChange", data);
+    private void seekInternal(long position) {
+        seekInternal(position, false);
+    }
+
+    private void seekInternal(long position, boolean scrub) {
+        if (engine == null) return;
+
+        if (scrub != scrubbing) {
+            scrubbing = scrub;
+            engine.setScrubbing(scrub);
+        }
+        seekbarPosition = position;
+        engine.seekTo(position);
+        if (scrubbing) {
+            // JS already shows the drag position, the exact seek on release reports back
+            return;
+        }
+
+        updateMediaSessionPosition(position);
+        sendPlayerState();
+        saveSession();
+    }
+
+    private void endScrubbing() {
+        if (!scrubbing) return;
+        scrubbing = false;
+        engine.setScrubbing(false);
     }
 
     private void startPositionUpdates() {
-        positionHandler.removeCallbacks(positionRunnable);
-        positionHandler.post(positionRunnable);
+        playbackHandler.removeCallbacks(positionRunnable);
+        nextTickDueAt = SystemClock.uptimeMillis();
+        playbackHandler.post(positionRunnable);
     }
 
     private void stopPositionUpdates() {
-        positionHandler.removeCallbacks(positionRunnable);
+        playbackHandler.removeCallbacks(positionRunnable);
+        nextTickDueAt = -1;
+    }
+
+    private void scheduleTick(long delayMs) {
+        nextTickDueAt = SystemClock.uptimeMillis() + delayMs;
+        playbackHandler.postDelayed(positionRunnable, delayMs);
+    }
+
+    private void onPlaybackThread(Runnable runnable) {
+        if (Looper.myLooper() == playbackHandler.getLooper()) {
+            runnable.run();
+        } else {
+            playbackHandler.post(runnable);
+        }
+    }
+
+    /**
+     * MediaSession and notification updates. Inline in the default mode, a hop to main with the playback thread.
+     */
+    private void runOnMain(Runnable runnable) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            runnable.run();
+        } else {
+            mainHandler.post(runnable);
+        }
+    }
+
+    private void emit(String eventName, JSObject data) {
+        metrics.onBridgeEvent(hasListeners(eventName));
+        notifyListeners(eventName, data);
     }
 
     private void sendPlayerState() {
-        if(trackQueue.isEmpty()) return;
+        // Anchors already cover every discontinuity that used to trigger this
+        AudioTrack track = engine.getCurrentTrack();
+        if (track == null || anchorMode || batching) return;
 
-        AudioTrack track = trackQueue.get(currentIndex);
-        JSObject data = new JSObject();
+        emit("playerStateChange", PlayerStatePayload.playerState(
+                track.getId(), backend.isPlaying(), backend.getPositionMs(), backend.getDurationMs()));
+    }
 
-        long position = exoPlayer.getCurrentPosition();
-        long duration = exoPlayer.getDuration();
+    private void sendPositionAnchor(String reason) {
+        AudioTrack track = engine != null ? engine.getCurrentTrack() : null;
+        if (track == null || batching) return;
 
-        data.put("isPlaying", exoPlayer.isPlaying());
-        data.put("position", position / 1000.0);
-        data.put("duration", duration > 0 ? duration / 1000.0 : 0);
-        data.put("trackId", track.getId());
+        long now = SystemClock.elapsedRealtime();
+        long position = backend.getPositionMs();
+        long duration = backend.getDurationMs();
+        boolean isPlaying = backend.isPlaying();
+        float rate = backend.getRate();
+        anchorTracker.markAnchor(now, position, isPlaying, rate);
 
-        notifyListeners("playerStateChange", data);
+        emit("positionAnchor", PlayerStatePayload.anchor(
+                track.getId(), isPlaying, position, duration, rate, now, reason));
     }
 
     private void notifyTrackChange(AudioTrack track) {
+        if (batching) {
+            // Only where the batch ends up is reported
+            batchTrackChanged = true;
+            return;
+        }
+        emit("trackChange", trackToJSObject(track));
+    }
+
+    private JSObject trackToJSObject(AudioTrack track) {
         JSObject data = new JSObject();
         data.put("id", track.getId());
         data.put("title", track.getTitle());
@@ -569,13 +1784,13 @@ public class AudioPlayerPlugin extends Plugin {
         data.put("duration", track.getDuration());
         data.put("url", track.getUrl());
         data.put("artwork", track.getArtwork());
-        notifyListeners("trackChange", data);
+        return data;
     }
 
     private void notifyError(String message) {
         JSObject data = new JSObject();
         data.put("error", message);
-        notifyListeners("error", data);
+        emit("error", data);
     }
 
     private void createNotificationChannel() {
@@ -588,129 +1803,126 @@ public class AudioPlayerPlugin extends Plugin {
 
     private void showNotification(AudioTrack track) {
         Context context = getContext();
-        if (context == null || exoPlayer == null) return;
-
-        boolean isPlaying = exoPlayer.isPlaying();
-        long positionMs = exoPlayer.getCurrentPosition();
-        long durationMs = exoPlayer.getDuration();
-
-        int positionSec = (int) (positionMs / 1000);
-        int durationSec = durationMs > 0 ? (int) (durationMs / 1000) : 0;
-
-        String positionText = String.format("%02d:%02d", positionSec / 60, positionSec % 60);
-        String durationText = durationSec > 0 ? String.format("%02d:%02d", durationSec / 60, durationSec % 60) : "--:--";
-
-        Log.d(TAG, "📱 Notification: " + (isPlaying ? "PLAYING" : "PAUSED") + " - " + positionText + "/" + durationText);
-
-        PendingIntent playPauseIntent = PendingIntent.getBroadcast(context, 100,
-                new Intent(context, AudioPlayerReceiver.class)
-                        .setAction(isPlaying ? "ACTION_PAUSE" : "ACTION_PLAY"),
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
-
-        PendingIntent nextPendingIntent = PendingIntent.getBroadcast(context, 200,
-                new Intent(context, AudioPlayerReceiver.class).setAction("ACTION_NEXT"),
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
-
-        PendingIntent prevPendingIntent = PendingIntent.getBroadcast(context, 300,
-                new Intent(context, AudioPlayerReceiver.class).setAction("ACTION_PREV"),
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
-
-        Intent contentIntent = new Intent(context, getActivity().getClass());
-        contentIntent.setFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP);
-        PendingIntent contentPendingIntent = PendingIntent.getActivity(context, 400, contentIntent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
-
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
-                .setContentTitle(track.getTitle())
-                .setContentText(track.getArtist() + " • " + positionText + "/" + durationText)
-                .setSmallIcon(android.R.drawable.ic_media_play)
-                .setContentIntent(contentPendingIntent)
-                .addAction(android.R.drawable.ic_media_previous, "Previous", prevPendingIntent)
-                .addAction(isPlaying ? android.R.drawable.ic_media_pause : android.R.drawable.ic_media_play,
-                        isPlaying ? "Pause" : "Play", playPauseIntent)
-                .addAction(android.R.drawable.ic_media_next, "Next", nextPendingIntent)
-                .setOngoing(true)
-                .setShowWhen(false)
-                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
-                .setOnlyAlertOnce(true)
-                .setAutoCancel(false);
-
-        // Use MediaStyle for interactive seekbar
-        MediaStyle style = new MediaStyle();
-        style.setMediaSession(mediaSession.getSessionToken());
-        style.setShowActionsInCompactView(0, 1, 2);
-        builder.setStyle(style);
-
-        // REMOVED: Manual progress bar - MediaSession handles seekbar
-
-        if (track.getArtwork() != null && !track.getArtwork().isEmpty()) {
-            try {
-                new Thread(() -> {
-                    try {
-                        java.net.URL url = new java.net.URL(track.getArtwork());
-                        java.io.InputStream input = url.openStream();
-                        android.graphics.Bitmap bitmap = android.graphics.BitmapFactory.decodeStream(input);
-                        builder.setLargeIcon(bitmap);
-
-                        NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-                        if (manager != null) {
-                            manager.notify(NOTIFICATION_ID, builder.build());
-                        }
-                        input.close();
-                    } catch (Exception e) {
-                        showNotificationWithoutArtwork(builder, context);
+        if (context == null || backend == null) return;
+
+        Bitmap artwork = null;
+        String artworkUrl = track.getArtwork();
+        if (artworkUrl != null && !artworkUrl.isEmpty()) {
+            artwork = artworkLoader.getCached(artworkUrl);
+            if (artwork == null) {
+                // Post without artwork now and again once it has loaded, if the track is still current
+                artworkLoader.load(artworkUrl, (url, bitmap) -> onPlaybackThread(() -> {
+                    AudioTrack current = engine != null ? engine.getCurrentTrack() : null;
+                    if (bitmap != null && current != null && url.equals(current.getArtwork())) {
+                        showNotification(current);
                     }
-                }).start();
-                return;
-            } catch (Exception e) {
-                // Continue without artwork
+                }));
             }
         }
 
-        showNotificationWithoutArtwork(builder, context);
-    }
-
-    private void showNotificationWithoutArtwork(NotificationCompat.Builder builder, Context context) {
-        NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-        if (manager != null) {
-            manager.notify(NOTIFICATION_ID, builder.build());
-        }
+        boolean isPlaying = backend.isPlaying();
+        Bitmap shownArtwork = artwork;
+        runOnMain(() -> {
+            if (notificationController == null) {
+                if (getActivity() == null) return;
+                notificationController = new NotificationController(context, CHANNEL_ID, NOTIFICATION_ID,
+                        getActivity().getClass(), mediaSession.getSessionToken());
+            }
+            notificationController.update(track, isPlaying, shownArtwork);
+        });
     }
 
     public static class AudioPlayerReceiver extends BroadcastReceiver {
         @Override
         public void onReceive(Context context, Intent intent) {
             AudioPlayerPlugin plugin = AudioPlayerPlugin.getInstance();
-            if (plugin == null) return;
+            if (plugin == null || plugin.playbackHandler == null) return;
 
             String action = intent.getAction();
             if (action == null) return;
 
-            switch (action) {
-                case "ACTION_PLAY":
-                    plugin.playInternal();
-                    break;
-                case "ACTION_PAUSE":
-                    plugin.pauseInternal();
-                    break;
-                case "ACTION_NEXT":
-                    plugin.nextInternal();
-                    break;
-                case "ACTION_PREV":
-                    plugin.previousInternal();
-                    break;
-                case "ACTION_STOP":
-                    if (plugin.exoPlayer != null) {
-                        plugin.exoPlayer.stop();
-                        plugin.stopPositionUpdates();
-                    }
-                    break;
+            plugin.onPlaybackThread(() -> {
+                if (plugin.engine == null && plugin.releasedSnapshot == null) return;
+
+                switch (action) {
+                    case "ACTION_PLAY":
+                        plugin.ensurePlayer();
+                        plugin.playInternal();
+                        break;
+                    case "ACTION_PAUSE":
+                        plugin.pauseInternal();
+                        break;
+                    case "ACTION_NEXT":
+                        plugin.ensurePlayer();
+                        plugin.engine.next();
+                        break;
+                    case "ACTION_PREV":
+                        plugin.ensurePlayer();
+                        plugin.engine.previous();
+                        break;
+                    case "ACTION_STOP":
+                        plugin.stopInternal();
+                        break;
+                }
+            });
+        }
+    }
+
+    @Override
+    protected void handleOnResume() {
+        super.handleOnResume();
+        // Back in front, the memory that made buffers shrink is likely there again
+        onPlaybackThread(() -> {
+            if (profileBeforeTrim == null) return;
+            loadControl.setProfile(profileBeforeTrim);
+            profileBeforeTrim = null;
+            Log.d(TAG, "📶 Buffer profile " + loadControl.getProfile().name + " restored");
+        });
+    }
+
+    @Override
+    protected void handleOnPause() {
+        super.handleOnPause();
+        // The process may not live to the next batched write
+        onPlaybackThread(() -> {
+            if (!servicesReady || session == null) return;
+            saveSession();
+            session.flush();
+        });
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        getContext().getApplicationContext().unregisterComponentCallbacks(memoryCallbacks);
+        onPlaybackThread(() -> {
+            playbackHandler.removeCallbacks(idleRunnable);
+            releasedSnapshot = null;
+            queueFileLoader.release();
+            if (servicesReady && session != null) {
+                // The last position is read from the player, so before it goes
+                saveSession();
+                session.release();
             }
+            if (engine != null) engine.release();
+            if (!servicesReady) return;
+            prefetchManager.release();
+            uriResolver.release();
+            if (seekIndex != null) seekIndex.release();
+            waveformLoader.release();
+            downloader.release();
+            mediaCache.release();
+            artworkLoader.release();
+            network.release();
+        });
+        if (playbackThread != null) {
+            // Runs the release above before the looper stops
+            playbackThread.quitSafely();
         }
+        super.handleOnDestroy();
     }
 
     // Helper to get plugin instance
     private static AudioPlayerPlugin instance;
     public AudioPlayerPlugin() { instance = this; }
     public static AudioPlayerPlugin getInstance() { return instance; }
-}
\ No newline at end of file
+}
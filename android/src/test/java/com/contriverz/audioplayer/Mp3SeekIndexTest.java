@@ -0,0 +1,220 @@
+package com.contriverz.audioplayer;
+
+import static org.junit.Assert.*;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.extractor.DefaultExtractorInput;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.TrackOutput;
+import com.google.android.exoplayer2.upstream.DataReader;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Mp3SeekIndex scanning, SeekIndexStore persistence and IndexedMp3Extractor seeks on synthetic VBR streams.
+ */
+public class Mp3SeekIndexTest {
+
+    private static final int FRAMES = 500;
+    // MPEG 1 layer III bitrate indexes for 64, 128 and 320 kbps
+    private static final int[] BITRATES = {5, 9, 14};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Long> frameOffsets = new ArrayList<>();
+
+    private static int header(int bitrateIndex) {
+        // MPEG 1, layer III, no CRC, 44.1 kHz, joint stereo
+        return 0xFFE00000 | 3 << 19 | 1 << 17 | 1 << 16 | bitrateIndex << 12 | 1 << 6;
+    }
+
+    private static void writeFrame(ByteArrayOutputStream out, int header, String tag) {
+        int size = Mp3SeekIndex.frameSize(header);
+        byte[] frame = new byte[size];
+        frame[0] = (byte) (header >>> 24);
+        frame[1] = (byte) (header >>> 16);
+        frame[2] = (byte) (header >>> 8);
+        frame[3] = (byte) header;
+        if (tag != null) {
+            for (int i = 0; i < 4; i++) frame[36 + i] = (byte) tag.charAt(i);
+        }
+        out.write(frame, 0, size);
+    }
+
+    private byte[] vbrStream() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // ID3v2 tag with a 100 byte body
+        out.write(new byte[] {'I', 'D', '3', 4, 0, 0, 0, 0, 0, 100}, 0, 10);
+        out.write(new byte[100], 0, 100);
+        writeFrame(out, header(9), "Xing");
+        for (int i = 0; i < FRAMES; i++) {
+            frameOffsets.add((long) out.size());
+            writeFrame(out, header(BITRATES[(i * 7) % 3]), null);
+        }
+        // ID3v1 tag
+        byte[] id3v1 = new byte[128];
+        id3v1[0] = 'T';
+        id3v1[1] = 'A';
+        id3v1[2] = 'G';
+        out.write(id3v1, 0, 128);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void scan_indexesAudioFramesOnly() throws Exception {
+        byte[] stream = vbrStream();
+        Mp3SeekIndex index = Mp3SeekIndex.scan(new ByteArrayInputStream(stream));
+
+        assertNotNull(index);
+        assertEquals(stream.length, index.getLength());
+        assertEquals(FRAMES * 1152L * 1_000_000 / 44100, index.getDurationUs());
+        // 38 frames per entry at 44.1 kHz
+        assertEquals((FRAMES + 37) / 38, index.getEntryCount());
+        assertEquals((long) frameOffsets.get(0), index.getOffset(0));
+        assertEquals((long) frameOffsets.get(38 * 5), index.getOffset(5));
+
+        long fiveSeconds = index.getTimeUs(5);
+        assertEquals(38L * 5 * 1152 * 1_000_000 / 44100, fiveSeconds);
+        assertEquals(5, index.getEntryIndex(fiveSeconds));
+        assertEquals(4, index.getEntryIndex(fiveSeconds - 1));
+        assertEquals(index.getEntryCount() - 1, index.getEntryIndex(Long.MAX_VALUE / 1_000_000));
+    }
+
+    @Test
+    public void extractor_stampsSamplesFromTheEntrySeekedTo() throws Exception {
+        byte[] stream = vbrStream();
+        Mp3SeekIndex index = Mp3SeekIndex.scan(new ByteArrayInputStream(stream));
+        IndexedMp3Extractor extractor = new IndexedMp3Extractor(index, () -> fail("index mismatch"));
+        RecordingOutput output = new RecordingOutput();
+        extractor.init(output);
+
+        // The first sample from the start of the stream carries the seek map
+        readFirstSample(extractor, output, stream, 0);
+        assertEquals(0, output.sampleTimes.get(0).longValue());
+
+        // Between entries 5 and 6, ExoPlayer seeks to entry 5's bytes with the requested time
+        long requested = (index.getTimeUs(5) + index.getTimeUs(6)) / 2;
+        SeekMap.SeekPoints points = output.seekMap.getSeekPoints(requested);
+        assertEquals(index.getOffset(5), points.first.position);
+        extractor.seek(points.first.position, requested);
+        output.sampleTimes.clear();
+
+        readFirstSample(extractor, output, stream, points.first.position);
+        assertEquals(index.getTimeUs(5), output.sampleTimes.get(0).longValue());
+    }
+
+    private static void readFirstSample(Extractor extractor, RecordingOutput output, byte[] stream, long position)
+            throws IOException {
+        ByteArrayInputStream bytes = new ByteArrayInputStream(stream, (int) position, stream.length - (int) position);
+        DataReader reader = (buffer, offset, length) -> {
+            int read = bytes.read(buffer, offset, length);
+            return read < 0 ? C.RESULT_END_OF_INPUT : read;
+        };
+        DefaultExtractorInput input = new DefaultExtractorInput(reader, position, stream.length);
+        PositionHolder seekPosition = new PositionHolder();
+        while (output.sampleTimes.isEmpty()) {
+            assertEquals(Extractor.RESULT_CONTINUE, extractor.read(input, seekPosition));
+        }
+    }
+
+    private static class RecordingOutput implements ExtractorOutput, TrackOutput {
+        final List<Long> sampleTimes = new ArrayList<>();
+        SeekMap seekMap;
+
+        @Override
+        public TrackOutput track(int id, int type) {
+            return this;
+        }
+
+        @Override
+        public void endTracks() {
+        }
+
+        @Override
+        public void seekMap(SeekMap seekMap) {
+            this.seekMap = seekMap;
+        }
+
+        @Override
+        public void format(Format format) {
+        }
+
+        @Override
+        public int sampleData(DataReader input, int length, boolean allowEndOfInput, int sampleDataPart)
+                throws IOException {
+            byte[] skipped = new byte[length];
+            return input.read(skipped, 0, length);
+        }
+
+        @Override
+        public void sampleData(ParsableByteArray data, int length, int sampleDataPart) {
+            data.skipBytes(length);
+        }
+
+        @Override
+        public void sampleMetadata(long timeUs, int flags, int size, int offset, CryptoData cryptoData) {
+            sampleTimes.add(timeUs);
+        }
+    }
+
+    @Test
+    public void scan_rejectsOtherFormats() throws Exception {
+        byte[] notMp3 = new byte[100_000];
+        notMp3[0] = 'f';
+        notMp3[1] = 'L';
+        notMp3[2] = 'a';
+        notMp3[3] = 'C';
+        assertNull(Mp3SeekIndex.scan(new ByteArrayInputStream(notMp3)));
+    }
+
+    @Test
+    public void store_persistsAndSkipsUnindexable() throws Exception {
+        File dir = folder.newFolder();
+        byte[] stream = vbrStream();
+        int[] opened = new int[1];
+
+        SeekIndexStore store = new SeekIndexStore(dir);
+        assertNull(store.get("episode"));
+        store.build("episode", () -> {
+            opened[0]++;
+            return new ByteArrayInputStream(stream);
+        }).get(5, TimeUnit.SECONDS);
+        store.build("flac", () -> {
+            opened[0]++;
+            return new ByteArrayInputStream(new byte[100_000]);
+        }).get(5, TimeUnit.SECONDS);
+        assertNull(store.build("flac", () -> new ByteArrayInputStream(new byte[0])));
+        store.release();
+
+        // A second store reads it back from disk, and does not index it again
+        SeekIndexStore reopened = new SeekIndexStore(dir);
+        Mp3SeekIndex index = reopened.get("episode");
+        assertNotNull(index);
+        assertEquals((long) frameOffsets.get(38), index.getOffset(1));
+        reopened.build("episode", () -> {
+            opened[0]++;
+            return new ByteArrayInputStream(stream);
+        }).get(5, TimeUnit.SECONDS);
+        assertEquals(2, opened[0]);
+
+        reopened.invalidate("episode");
+        assertNull(reopened.get("episode"));
+        reopened.release();
+    }
+}
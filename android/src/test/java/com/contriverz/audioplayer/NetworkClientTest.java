@@ -0,0 +1,197 @@
+package com.contriverz.audioplayer;
+
+import static org.junit.Assert.*;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * NetworkClient connection reuse, headers and timing against local stand-in servers.
+ */
+public class NetworkClientTest {
+
+    private static final int SIZE = 100_000;
+    // Server think time before the response headers, time to first byte has to cover it
+    private static final long SERVER_DELAY_MS = 20;
+
+    private HttpServer server;
+    private final byte[] body = new byte[SIZE];
+    // Client ports seen by the server, one per TCP connection
+    private final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<>());
+    private final List<Map<String, String>> requestHeaders = Collections.synchronizedList(new ArrayList<>());
+
+    private final AtomicInteger connectionsOpened = new AtomicInteger();
+    private final List<Long> firstByteMs = Collections.synchronizedList(new ArrayList<>());
+    private final NetworkClient.Listener listener = new NetworkClient.Listener() {
+        @Override
+        public void onConnectionOpened(String host) {
+            connectionsOpened.incrementAndGet();
+        }
+
+        @Override
+        public void onFirstByte(String host, long ms) {
+            firstByteMs.add(ms);
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        for (int i = 0; i < SIZE; i++) {
+            body[i] = (byte) i;
+        }
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            Map<String, String> headers = new HashMap<>();
+            for (String name : new String[] {"Authorization", "X-Client"}) {
+                String value = exchange.getRequestHeaders().getFirst(name);
+                if (value != null) headers.put(name, value);
+            }
+            requestHeaders.add(headers);
+
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            int from = range != null ? Integer.parseInt(range.substring("bytes=".length(), range.length() - 1)) : 0;
+            try {
+                Thread.sleep(SERVER_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(range != null ? 206 : 200, SIZE - from);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body, from, SIZE - from);
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    @Test
+    public void get_reusesOneConnectionForRangeRequests() throws Exception {
+        NetworkClient network = new NetworkClient(listener);
+
+        // Seeks through a track, as the player and the downloader request it
+        for (int i = 0; i < 10; i++) {
+            long from = i * 10_000L;
+            try (Response response = network.get(url("/track.mp3"), from)) {
+                assertEquals(from > 0 ? 206 : 200, response.code());
+                byte[] bytes = response.body().bytes();
+                assertEquals(SIZE - from, bytes.length);
+                assertEquals(body[(int) from], bytes[0]);
+            }
+        }
+
+        assertEquals(1, connectionsOpened.get());
+        assertEquals(1, clientPorts.size());
+        assertEquals(1, network.getConnectionCount());
+        assertEquals(10, firstByteMs.size());
+        for (long ms : firstByteMs) {
+            assertTrue("time to first byte " + ms + "ms", ms >= SERVER_DELAY_MS && ms < 5000);
+        }
+
+        network.release();
+        assertEquals(0, network.getConnectionCount());
+    }
+
+    @Test
+    public void headers_followHostAndYieldToTheRequest() throws Exception {
+        NetworkClient network = new NetworkClient(listener);
+        Map<String, String> all = new HashMap<>();
+        all.put("Authorization", "Bearer everyone");
+        all.put("X-Client", "player");
+        network.setHeaders(NetworkClient.ALL_HOSTS, all);
+        network.setHeaders("127.0.0.1", Collections.singletonMap("Authorization", "Bearer local"));
+
+        network.get(url("/a"), 0).close();
+        network.newCall(new Request.Builder().url(url("/b")).header("Authorization", "Bearer own").build())
+                .execute().close();
+        network.setHeaders("127.0.0.1", null);
+        network.get(url("/c"), 0).close();
+
+        assertEquals("Bearer local", requestHeaders.get(0).get("Authorization"));
+        assertEquals("player", requestHeaders.get(0).get("X-Client"));
+        assertEquals("Bearer own", requestHeaders.get(1).get("Authorization"));
+        assertEquals("Bearer everyone", requestHeaders.get(2).get("Authorization"));
+    }
+
+    @Test
+    public void http2_multiplexesParallelRequestsOverOneConnection() throws Exception {
+        MockWebServer h2 = new MockWebServer();
+        h2.setProtocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+        CountDownLatch allArrived = new CountDownLatch(8);
+        h2.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                if (request.getPath().equals("/warm")) return new MockResponse();
+                // Answers only once all eight are in flight at the same time
+                allArrived.countDown();
+                allArrived.await(5, TimeUnit.SECONDS);
+                return new MockResponse().setBody("chunk " + request.getPath());
+            }
+        });
+        h2.start();
+
+        NetworkClient network = new NetworkClient(listener, Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+        // Calls racing on an empty pool may each dial before OkHttp coalesces them, playback always has one open
+        network.get(h2.url("/warm").toString(), 0).close();
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> bodies = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String url = h2.url("/segment" + i).toString();
+                bodies.add(callers.submit(() -> {
+                    try (Response response = network.get(url, 0)) {
+                        assertEquals(Protocol.H2_PRIOR_KNOWLEDGE, response.protocol());
+                        return response.body().string();
+                    }
+                }));
+            }
+            for (int i = 0; i < 8; i++) {
+                assertEquals("chunk /segment" + i, bodies.get(i).get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            callers.shutdownNow();
+            h2.shutdown();
+        }
+
+        assertEquals(1, connectionsOpened.get());
+        assertEquals(9, firstByteMs.size());
+    }
+}
@@ -0,0 +1,193 @@
+package com.contriverz.audioplayer;
+
+import static org.junit.Assert.*;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * OfflineDownloader against a local HTTP server that honours Range requests.
+ */
+public class OfflineDownloaderTest {
+
+    private static final int SIZE = 200_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private final byte[] body = new byte[SIZE];
+    private final List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    private final List<String> evicted = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+    private CountDownLatch done;
+
+    @Before
+    public void setUp() throws IOException {
+        for (int i = 0; i < SIZE; i++) {
+            body[i] = (byte) i;
+        }
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            int now = running.incrementAndGet();
+            maxRunning.accumulateAndGet(now, Math::max);
+            try {
+                String range = exchange.getRequestHeaders().getFirst("Range");
+                ranges.add(range);
+                int from = range != null ? Integer.parseInt(range.substring("bytes=".length(), range.length() - 1)) : 0;
+
+                exchange.sendResponseHeaders(range != null ? 206 : 200, SIZE - from);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    // Slow enough that parallel downloads overlap
+                    Thread.sleep(50);
+                    out.write(body, from, SIZE - from);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private String url(String name) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/" + name;
+    }
+
+    private OfflineDownloader downloader(File dir) {
+        return new OfflineDownloader(dir, new NetworkClient(new NetworkClient.Listener() {}), new OfflineDownloader.Listener() {
+            @Override
+            public void onProgress(String id, long bytesDownloaded, long totalBytes) {
+            }
+
+            @Override
+            public void onComplete(String id, File file) {
+                done.countDown();
+            }
+
+            @Override
+            public void onError(String id, String message) {
+                errors.add(id + ": " + message);
+                done.countDown();
+            }
+
+            @Override
+            public void onEvicted(String id) {
+                evicted.add(id);
+            }
+        });
+    }
+
+    private void await() throws InterruptedException {
+        assertTrue("downloads did not finish", done.await(10, TimeUnit.SECONDS));
+        assertEquals(Collections.emptyList(), errors);
+    }
+
+    @Test
+    public void download_limitsParallelismAndStoresFiles() throws Exception {
+        OfflineDownloader downloader = downloader(folder.newFolder());
+        downloader.configure(2, OfflineDownloader.DEFAULT_QUOTA_BYTES);
+        done = new CountDownLatch(5);
+
+        for (int i = 0; i < 5; i++) {
+            downloader.enqueue("t" + i, url("t" + i), false);
+        }
+        await();
+
+        assertTrue(maxRunning.get() <= 2);
+        File file = downloader.getFile("t3");
+        assertArrayEquals(body, Files.readAllBytes(file.toPath()));
+        assertEquals(5L * SIZE, downloader.getUsedBytes());
+        downloader.release();
+    }
+
+    @Test
+    public void download_resumesPartialFileWithRange() throws Exception {
+        File dir = folder.newFolder();
+        OfflineDownloader downloader = downloader(dir);
+
+        // Leave the first half behind as an interrupted download would
+        done = new CountDownLatch(1);
+        downloader.enqueue("t0", url("t0"), false);
+        await();
+        File file = downloader.getFile("t0");
+        assertTrue(downloader.remove("t0"));
+        try (FileOutputStream out = new FileOutputStream(new File(dir, file.getName().replace(".audio", ".part")))) {
+            out.write(body, 0, SIZE / 2);
+        }
+
+        done = new CountDownLatch(1);
+        downloader.enqueue("t0", url("t0"), false);
+        await();
+
+        assertEquals("bytes=" + (SIZE / 2) + "-", ranges.get(ranges.size() - 1));
+        assertArrayEquals(body, Files.readAllBytes(downloader.getFile("t0").toPath()));
+        downloader.release();
+    }
+
+    @Test
+    public void quota_evictsLeastRecentlyUsedUnpinned() throws Exception {
+        File dir = folder.newFolder();
+        OfflineDownloader downloader = downloader(dir);
+        downloader.configure(1, 3L * SIZE);
+
+        done = new CountDownLatch(3);
+        downloader.enqueue("pinned", url("pinned"), true);
+        downloader.enqueue("old", url("old"), false);
+        downloader.enqueue("played", url("played"), false);
+        await();
+        downloader.getFile("old");
+        downloader.getFile("played");
+
+        done = new CountDownLatch(1);
+        downloader.enqueue("new", url("new"), false);
+        await();
+
+        assertEquals(Collections.singletonList("old"), evicted);
+        assertNull(downloader.getFile("old"));
+        assertEquals(3L * SIZE, downloader.getUsedBytes());
+
+        // Pinned survives even when only it could make room
+        downloader.configure(1, SIZE);
+        assertEquals(Arrays.asList("old", "played", "new"), evicted);
+        assertNotNull(downloader.getFile("pinned"));
+        downloader.release();
+
+        // The index survives a restart
+        OfflineDownloader reopened = downloader(dir);
+        assertNotNull(reopened.getFile("pinned"));
+        assertFalse(reopened.isDownloaded("new"));
+        reopened.release();
+    }
+}
@@ -0,0 +1,427 @@
+package com.contriverz.audioplayer;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Queue and transition behaviour of PlaybackEngine, run against FakePlayerBackend.
+ */
+public class PlaybackEngineTest {
+
+    private FakePlayerBackend backend;
+    private PlaybackEngine engine;
+    private final List<String> changes = new ArrayList<>();
+    private int queueEnded;
+    private String noTrack;
+
+    @Before
+    public void setUp() {
+        backend = new FakePlayerBackend();
+        engine = new PlaybackEngine(backend, 42);
+        engine.setListener(new PlaybackEngine.Listener() {
+            @Override
+            public void onTrackChanged(AudioTrack track, boolean automatic) {
+                changes.add(track.getId() + (automatic ? ":auto" : ""));
+            }
+
+            @Override
+            public void onQueueEnded() {
+                queueEnded++;
+            }
+
+            @Override
+            public void onNoTrack(String direction) {
+                noTrack = direction;
+            }
+        });
+    }
+
+    private static List<AudioTrack> tracks(int count) {
+        List<AudioTrack> tracks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            tracks.add(new AudioTrack("t" + i, "Track " + i, "Artist", "Album", 10.0, "https://example.com/" + i + ".mp3", ""));
+        }
+        return tracks;
+    }
+
+    @Test
+    public void setQueue_loadsStartTrackWithNextQueued() {
+        engine.setQueue(tracks(3), 1);
+
+        assertEquals("t1", backend.getCurrentTrack().getId());
+        assertEquals("t2", backend.getNextTrack().getId());
+        assertEquals(1, engine.getCurrentIndex());
+    }
+
+    @Test
+    public void autoAdvance_isGaplessAndEndsAfterLastTrack() {
+        engine.setQueue(tracks(3), 0);
+        engine.play();
+
+        backend.advance(25_000);
+
+        assertEquals(2, engine.getCurrentIndex());
+        assertEquals(1, backend.getLoadCount());
+        assertNull(backend.getNextTrack());
+        assertEquals(0, queueEnded);
+
+        backend.advance(10_000);
+
+        assertEquals(1, queueEnded);
+        assertFalse(backend.isPlaying());
+        assertEquals(List.of("t0", "t1:auto", "t2:auto"), changes);
+    }
+
+    @Test
+    public void repeatAll_wrapsToFirstTrack() {
+        engine.setQueue(tracks(2), 1);
+        engine.setRepeatMode(PlaybackEngine.REPEAT_ALL);
+        engine.play();
+
+        assertEquals("t0", backend.getNextTrack().getId());
+        backend.advance(10_000);
+
+        assertEquals(0, engine.getCurrentIndex());
+        assertEquals(0, queueEnded);
+    }
+
+    @Test
+    public void repeatOne_loopsCurrentTrack() {
+        engine.setQueue(tracks(2), 0);
+        engine.setRepeatMode(PlaybackEngine.REPEAT_ONE);
+        engine.play();
+
+        backend.advance(35_000);
+
+        assertEquals(0, engine.getCurrentIndex());
+        assertEquals(5_000, backend.getPositionMs());
+    }
+
+    @Test
+    public void next_atEndWithoutRepeat_reportsNoTrack() {
+        engine.setQueue(tracks(2), 1);
+
+        assertFalse(engine.next());
+        assertEquals("next", noTrack);
+        assertEquals(1, engine.getCurrentIndex());
+    }
+
+    @Test
+    public void shuffle_visitsEveryTrackOnceStartingWithCurrent() {
+        engine.setQueue(tracks(20), 5);
+        engine.setShuffle(true);
+
+        List<String> visited = new ArrayList<>();
+        visited.add(engine.getCurrentTrack().getId());
+        while (engine.next()) {
+            visited.add(engine.getCurrentTrack().getId());
+        }
+
+        assertEquals("t5", visited.get(0));
+        assertEquals(20, visited.size());
+        assertEquals(20, visited.stream().distinct().count());
+
+        // previous walks the same order backwards
+        engine.previous();
+        assertEquals(visited.get(18), engine.getCurrentTrack().getId());
+    }
+
+    @Test
+    public void shuffle_sameSeedGivesSameOrderAndOffRestoresQueueOrder() {
+        engine.setQueue(tracks(50), 0);
+        engine.setShuffle(true, 7);
+        List<AudioTrack> first = engine.upcoming(49);
+        engine.setShuffle(false);
+        assertEquals("t1", engine.upcoming(1).get(0).getId());
+
+        engine.setShuffle(true, 7);
+        assertEquals(first, engine.upcoming(49));
+    }
+
+    @Test
+    public void removeTrack_manyUnderShuffleKeepsOrderAndLookups() {
+        engine.setQueue(tracks(200), 0);
+        engine.setShuffle(true, 3);
+        List<AudioTrack> before = engine.upcoming(199);
+
+        // Enough removals to force compaction of the backing slots
+        List<AudioTrack> kept = new ArrayList<>();
+        for (int i = 0; i < before.size(); i++) {
+            if (i % 4 == 0) {
+                kept.add(before.get(i));
+            } else {
+                assertTrue(engine.removeTrack(before.get(i).getId()));
+            }
+        }
+
+        assertEquals("t0", engine.getCurrentTrack().getId());
+        assertEquals(kept, engine.upcoming(199));
+        assertEquals(kept.size() + 1, engine.getQueue().size());
+
+        AudioTrack target = kept.get(10);
+        assertTrue(engine.skipTo(target.getId()));
+        engine.previous();
+        assertEquals(kept.get(9), engine.getCurrentTrack());
+    }
+
+    @Test
+    public void compactStorage_behavesLikePlainStorage() {
+        engine.getQueue().setCompactThreshold(0);
+        engine.setQueue(tracks(100), 3);
+        engine.setShuffle(true, 11);
+
+        assertTrue(engine.getQueue().isCompact());
+        for (int i = 0; i < 100; i += 2) {
+            assertTrue(engine.removeTrack("t" + i));
+        }
+        assertEquals(50, engine.getQueue().size());
+        assertEquals("t3", engine.getCurrentTrack().getId());
+
+        AudioTrack view = engine.getQueue().get(engine.getQueue().indexOf("t7"));
+        assertEquals("Artist", view.getArtist());
+        assertEquals(10.0, view.getDuration(), 0.0);
+        assertEquals("https://example.com/7.mp3", view.getUrl());
+
+        int visited = 1;
+        while (engine.next()) visited++;
+        assertEquals(50, visited);
+    }
+
+    @Test
+    public void removeTrack_requeuesNextAndMovesOnFromCurrent() {
+        engine.setQueue(tracks(4), 1);
+
+        assertTrue(engine.removeTrack("t2"));
+        assertEquals("t3", backend.getNextTrack().getId());
+        assertEquals(1, engine.getCurrentIndex());
+
+        assertTrue(engine.removeTrack("t1"));
+        assertEquals("t3", engine.getCurrentTrack().getId());
+        assertFalse(engine.removeTrack("missing"));
+    }
+
+    @Test
+    public void removeTrack_lastCurrentWithoutRepeatEndsInsteadOfWrapping() {
+        engine.setQueue(tracks(3), 2);
+        engine.play();
+
+        assertTrue(engine.removeTrack("t2"));
+
+        assertEquals("t1", engine.getCurrentTrack().getId());
+        assertFalse(backend.isPlaying());
+        assertNull(backend.getNextTrack());
+        assertEquals(1, queueEnded);
+
+        // With repeat all it wraps to the first track and keeps going
+        engine.setQueue(tracks(3), 2);
+        engine.setRepeatMode(PlaybackEngine.REPEAT_ALL);
+        engine.play();
+        assertTrue(engine.removeTrack("t2"));
+        assertEquals("t0", engine.getCurrentTrack().getId());
+        assertTrue(backend.isPlaying());
+        assertEquals(1, queueEnded);
+    }
+
+    @Test
+    public void queuePositions_followRemovalsGrowthAndCompactStorage() {
+        engine.getQueue().setCompactThreshold(150);
+        engine.setQueue(tracks(100), 0);
+        TrackQueue queue = engine.getQueue();
+        List<String> remaining = new ArrayList<>();
+        for (AudioTrack track : queue) remaining.add(track.getId());
+
+        // Few enough removals to leave holes, then appends that grow and switch the storage
+        for (int i = 1; i < 40; i += 3) {
+            assertTrue(engine.removeTrack("t" + i));
+            remaining.remove("t" + i);
+        }
+        List<AudioTrack> more = new ArrayList<>();
+        for (int i = 100; i < 200; i++) {
+            more.add(new AudioTrack("t" + i, "Track " + i, "Artist", "Album", 10.0, "https://example.com/" + i + ".mp3", ""));
+            remaining.add("t" + i);
+        }
+        engine.addTracks(more);
+        assertTrue(queue.isCompact());
+        assertTrue(engine.removeTrack("t150"));
+        remaining.remove("t150");
+
+        for (int position = 0; position < remaining.size(); position++) {
+            int index = queue.indexAtPosition(position);
+            assertEquals(remaining.get(position), queue.getId(index));
+            assertEquals(position, queue.positionOf(index));
+        }
+        assertEquals(-1, queue.indexAtPosition(remaining.size()));
+    }
+
+    @Test
+    public void duplicateIds_keepEveryCopyInTheQueue() {
+        List<AudioTrack> queued = tracks(3);
+        queued.add(queued.get(0));
+        queued.addAll(tracks(2));
+        // t0 t1 t2 t0 t0 t1
+        engine.setQueue(queued, 1);
+
+        assertTrue(engine.removeTrack("t0"));
+        assertEquals(5, engine.getQueue().size());
+        assertEquals(2, engine.getQueue().indexOf("t2"));
+        assertEquals(3, engine.getQueue().indexOf("t0"));
+
+        assertTrue(engine.removeTrack("t0"));
+        assertTrue(engine.removeTrack("t0"));
+        assertFalse(engine.removeTrack("t0"));
+        assertEquals(1, engine.getQueue().indexOf("t1"));
+
+        // The later t1 takes over once the playing one is removed
+        assertTrue(engine.removeTrack("t1"));
+        assertEquals("t2", engine.getCurrentTrack().getId());
+        assertEquals("t1", backend.getNextTrack().getId());
+        assertEquals(5, engine.getQueue().indexOf("t1"));
+    }
+
+    @Test
+    public void removeTrack_keepsPlayingTheSameCopyOfARepeatedId() {
+        List<AudioTrack> queued = tracks(4);
+        queued.add(queued.get(0));
+        // t0 t1 t2 t3 t0, playing the first t0
+        engine.setQueue(queued, 0);
+
+        assertTrue(engine.removeTrack("t1"));
+        assertEquals(0, engine.getCurrentIndex());
+        assertEquals("t2", backend.getNextTrack().getId());
+
+        // Playing the second copy while enough removals compact the queue
+        queued = tracks(40);
+        queued.add(queued.get(39));
+        engine.setQueue(queued, 40);
+        for (int i = 0; i < 39; i++) {
+            assertTrue(engine.removeTrack("t" + i));
+        }
+        assertEquals(1, engine.getCurrentIndex());
+        assertNull(backend.getNextTrack());
+        assertFalse(engine.next());
+    }
+
+    @Test
+    public void addTracks_toEmptyQueueLoadsFirst() {
+        engine.addTracks(tracks(2));
+
+        assertEquals("t0", backend.getCurrentTrack().getId());
+        assertEquals("t1", backend.getNextTrack().getId());
+    }
+
+    private static List<AudioTrack> batch(int batch, int count) {
+        List<AudioTrack> tracks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            tracks.add(new AudioTrack("b" + batch + "-" + i, "Track " + i, "Artist", "Album", 10.0, "https://example.com/" + i + ".mp3", ""));
+        }
+        return tracks;
+    }
+
+    @Test
+    public void addTracks_underShuffleMixesAcrossBatches() {
+        engine.setQueue(tracks(1), 0);
+        engine.setShuffle(true, 5);
+        for (int b = 0; b < 10; b++) {
+            engine.addTracks(batch(b, 10));
+        }
+
+        // The next ten come from several batches, not just the first one
+        long batches = engine.upcoming(10).stream().map(track -> track.getId().split("-")[0]).distinct().count();
+        assertTrue(batches > 3);
+
+        // Batches appended mid-play only land ahead of the current track, nothing replays or is skipped
+        List<String> visited = new ArrayList<>();
+        visited.add(engine.getCurrentTrack().getId());
+        for (int b = 10; b < 15; b++) {
+            for (int i = 0; i < 7; i++) {
+                assertTrue(engine.next());
+                visited.add(engine.getCurrentTrack().getId());
+            }
+            engine.addTracks(batch(b, 10));
+        }
+        while (engine.next()) {
+            visited.add(engine.getCurrentTrack().getId());
+        }
+        assertEquals(151, visited.size());
+        assertEquals(151, visited.stream().distinct().count());
+    }
+
+    @Test
+    public void reshuffleUpcoming_mixesAStreamedLoadAcrossAllBatches() {
+        engine.setShuffle(true, 9);
+        // Delivered the way a file load does, a large first batch and then the rest
+        engine.setQueue(batch(0, 100), 0);
+        for (int b = 1; b <= 5; b++) {
+            engine.addTracks(batch(b, 100));
+        }
+        assertTrue(engine.upcoming(99).stream().allMatch(track -> track.getId().startsWith("b0-")));
+        engine.next();
+        String playing = engine.getCurrentTrack().getId();
+
+        engine.reshuffleUpcoming();
+
+        assertEquals(playing, engine.getCurrentTrack().getId());
+        long fromLaterBatches = engine.upcoming(20).stream().filter(track -> !track.getId().startsWith("b0-")).count();
+        assertTrue(fromLaterBatches > 10);
+        assertEquals(engine.upcoming(1).get(0).getId(), backend.getNextTrack().getId());
+
+        List<String> visited = new ArrayList<>();
+        while (engine.next()) {
+            visited.add(engine.getCurrentTrack().getId());
+        }
+        assertEquals(598, visited.size());
+        assertEquals(598, visited.stream().distinct().count());
+        assertFalse(visited.contains("b0-0"));
+        assertFalse(visited.contains(playing));
+    }
+
+    @Test
+    public void snapshot_restoresOnNewEngineWithoutTrackChange() {
+        engine.setQueue(tracks(10), 3);
+        engine.setShuffle(true, 7);
+        engine.setRepeatMode(PlaybackEngine.REPEAT_ALL);
+        engine.setRate(1.5f);
+        engine.seekTo(4_000);
+        List<AudioTrack> upcoming = engine.upcoming(9);
+
+        PlaybackEngine.Snapshot snapshot = engine.snapshot();
+        engine.release();
+        changes.clear();
+
+        FakePlayerBackend restoredBackend = new FakePlayerBackend();
+        PlaybackEngine restored = new PlaybackEngine(restoredBackend, 1);
+        restored.restore(snapshot);
+
+        assertEquals("t3", restoredBackend.getCurrentTrack().getId());
+        assertEquals(4_000, restoredBackend.getPositionMs());
+        assertEquals(1.5f, restoredBackend.getRate(), 0.0f);
+        assertFalse(restoredBackend.isPlaying());
+        assertEquals(upcoming, restored.upcoming(9));
+        assertEquals(upcoming.get(0).getId(), restoredBackend.getNextTrack().getId());
+        assertEquals(PlaybackEngine.REPEAT_ALL, restored.getRepeatMode());
+        assertEquals(engine.getCurrentIndex(), restored.getCurrentIndex());
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    public void adoptQueue_keepsCurrentTrackPlaying() {
+        engine.setQueue(tracks(1), 0);
+        engine.play();
+        backend.advance(3_000);
+
+        TrackQueue full = new TrackQueue();
+        full.addAll(tracks(5));
+        engine.adoptQueue(full, 0);
+
+        assertEquals(1, backend.getLoadCount());
+        assertEquals(3_000, backend.getPositionMs());
+        assertEquals("t1", backend.getNextTrack().getId());
+        assertEquals(5, engine.getQueue().size());
+        assertEquals(List.of("t0"), changes);
+    }
+}
@@ -0,0 +1,169 @@
+package com.contriverz.audioplayer;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * SessionStore journal replay and state round trips, across store instances as across process death.
+ */
+public class SessionStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<AudioTrack> tracks(int from, int count) {
+        List<AudioTrack> tracks = new ArrayList<>();
+        for (int i = from; i < from + count; i++) {
+            tracks.add(new AudioTrack("t" + i, "Track " + i, i % 2 == 0 ? "Artist" : null, null,
+                    i % 3 == 0 ? null : 10.0, "https://example.com/" + i + ".mp3", ""));
+        }
+        return tracks;
+    }
+
+    /**
+     * Replays the journal, which also waits for every write queued before it.
+     */
+    private static TrackQueue load(SessionStore store) throws InterruptedException {
+        TrackQueue[] result = new TrackQueue[1];
+        CountDownLatch loaded = new CountDownLatch(1);
+        store.loadQueue(TrackQueue.DEFAULT_COMPACT_THRESHOLD, queue -> {
+            result[0] = queue;
+            loaded.countDown();
+        });
+        assertTrue(loaded.await(5, TimeUnit.SECONDS));
+        return result[0];
+    }
+
+    private static List<String> ids(TrackQueue queue) {
+        List<String> ids = new ArrayList<>();
+        for (AudioTrack track : queue) {
+            ids.add(track.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void journal_replaysSetAddAndRemove() throws Exception {
+        File dir = folder.newFolder();
+        SessionStore store = new SessionStore(dir);
+        assertNull(load(store));
+
+        store.queueSet(tracks(0, 3));
+        store.tracksAdded(tracks(3, 2));
+        assertFalse(store.trackRemoved("t1", 1));
+        load(store);
+        store.release();
+
+        TrackQueue queue = load(new SessionStore(dir));
+        assertEquals(Arrays.asList("t0", "t2", "t3", "t4"), ids(queue));
+        AudioTrack track = queue.get(queue.indexOf("t3"));
+        assertEquals("Track 3", track.getTitle());
+        assertNull(track.getArtist());
+        assertNull(track.getDuration());
+        assertEquals("https://example.com/3.mp3", track.getUrl());
+        assertEquals(10.0, queue.get(queue.indexOf("t4")).getDuration(), 0);
+    }
+
+    @Test
+    public void journal_removesTheRightCopyOfARepeatedId() throws Exception {
+        File dir = folder.newFolder();
+        SessionStore store = new SessionStore(dir);
+        List<AudioTrack> tracks = tracks(0, 3);
+        tracks.add(tracks.get(1));
+        // t0 t1 t2 t1, the second t1 goes
+        store.queueSet(tracks);
+        store.trackRemoved("t1", 3);
+        load(store);
+
+        assertEquals(Arrays.asList("t0", "t1", "t2"), ids(load(new SessionStore(dir))));
+
+        // A record that no longer fits the queue means the journal cannot be trusted
+        store.trackRemoved("t1", 0);
+        assertNull(load(store));
+        store.release();
+    }
+
+    @Test
+    public void journal_keepsRecordsBeforeATruncatedOne() throws Exception {
+        File dir = folder.newFolder();
+        SessionStore store = new SessionStore(dir);
+        store.queueSet(tracks(0, 2));
+        store.tracksAdded(tracks(2, 1));
+        load(store);
+        store.release();
+
+        // Killed halfway through appending a record
+        File journal = new File(dir, "queue.journal");
+        long complete = journal.length();
+        SessionStore appending = new SessionStore(dir);
+        appending.tracksAdded(tracks(3, 1));
+        load(appending);
+        appending.release();
+        try (RandomAccessFile file = new RandomAccessFile(journal, "rw")) {
+            file.setLength(complete + (file.length() - complete) / 2);
+        }
+
+        assertEquals(Arrays.asList("t0", "t1", "t2"), ids(load(new SessionStore(dir))));
+    }
+
+    @Test
+    public void state_roundTripsAndClears() throws Exception {
+        File dir = folder.newFolder();
+        SessionStore store = new SessionStore(dir);
+        assertNull(store.readState());
+
+        AudioTrack track = tracks(7, 1).get(0);
+        store.saveState(new SessionStore.State(track, 0, 1_000, PlaybackEngine.REPEAT_NONE, false, 1f));
+        // Only the latest state before a flush is written
+        store.saveState(new SessionStore.State(track, 3, 42_000, PlaybackEngine.REPEAT_ALL, true, 1.5f));
+        store.flush();
+        load(store);
+
+        SessionStore.State state = new SessionStore(dir).readState();
+        assertNotNull(state);
+        assertEquals("t7", state.track.getId());
+        assertEquals("https://example.com/7.mp3", state.track.getUrl());
+        assertEquals(3, state.queuePosition);
+        assertEquals(42_000, state.positionMs);
+        assertEquals(PlaybackEngine.REPEAT_ALL, state.repeatMode);
+        assertTrue(state.shuffle);
+        assertEquals(1.5f, state.rate, 0);
+
+        store.queueSet(Collections.singletonList(track));
+        store.clear();
+        assertNull(load(store));
+        assertNull(store.readState());
+        store.release();
+    }
+
+    @Test
+    public void trackRemoved_signalsCompactionOnceRemovalsDominate() throws Exception {
+        SessionStore store = new SessionStore(folder.newFolder());
+        List<AudioTrack> tracks = tracks(0, 3000);
+        store.queueSet(tracks);
+
+        int removed = 0;
+        while (!store.trackRemoved(tracks.get(removed).getId(), 0)) {
+            removed++;
+        }
+        // Past 1024 removals and more removed than left
+        assertEquals(1500, removed);
+
+        store.queueSet(tracks.subList(removed + 1, tracks.size()));
+        assertFalse(store.trackRemoved(tracks.get(removed + 1).getId(), 0));
+        assertEquals(1498, load(store).size());
+        store.release();
+    }
+}
@@ -0,0 +1,97 @@
+package com.contriverz.audioplayer;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.nio.ShortBuffer;
+
+import org.junit.Test;
+
+/**
+ * WaveformPeaks bucketing of PCM buffers by presentation time.
+ */
+public class WaveformPeaksTest {
+
+    private static final int SAMPLE_RATE = 8000;
+
+    /**
+     * Stereo PCM, one second per amplitude, left channel silent.
+     */
+    private static short[] stereo(int... amplitudes) {
+        short[] pcm = new short[amplitudes.length * SAMPLE_RATE * 2];
+        for (int second = 0; second < amplitudes.length; second++) {
+            for (int frame = 0; frame < SAMPLE_RATE; frame++) {
+                int sample = frame % 2 == 0 ? amplitudes[second] : -amplitudes[second];
+                pcm[(second * SAMPLE_RATE + frame) * 2 + 1] = (short) Math.max(Short.MIN_VALUE, sample);
+            }
+        }
+        return pcm;
+    }
+
+    /**
+     * Feeds the PCM in decoder sized buffers, each with its own presentation time.
+     */
+    private static void feed(WaveformPeaks peaks, short[] pcm, int framesPerBuffer) {
+        for (int frame = 0; frame < pcm.length / 2; frame += framesPerBuffer) {
+            int frames = Math.min(framesPerBuffer, pcm.length / 2 - frame);
+            ShortBuffer buffer = ShortBuffer.wrap(pcm, frame * 2, frames * 2);
+            peaks.addPcm16(buffer.slice(), 2, SAMPLE_RATE, frame * 1_000_000L / SAMPLE_RATE);
+        }
+    }
+
+    @Test
+    public void addPcm16_placesPeaksByTime() {
+        WaveformPeaks peaks = new WaveformPeaks(4, 4_000_000);
+        feed(peaks, stereo(32767, 16384, 0, 8192), 1152);
+
+        assertEquals(1f, peaks.get(0), 0.001);
+        assertEquals(0.5f, peaks.get(1), 0.001);
+        assertEquals(0f, peaks.get(2), 0);
+        assertEquals(0.25f, peaks.get(3), 0.001);
+    }
+
+    @Test
+    public void addPcm16_reportsFinalPeaksAsDecodingMovesOn() {
+        // More peaks than buffers, each buffer spans several
+        WaveformPeaks peaks = new WaveformPeaks(400, 4_000_000);
+        short[] pcm = stereo(100, 200, 300, 400);
+        ShortBuffer firstSecond = ShortBuffer.wrap(pcm, 0, SAMPLE_RATE * 2);
+        peaks.addPcm16(firstSecond, 2, SAMPLE_RATE, 0);
+        assertEquals(99, peaks.getFilled());
+        assertEquals(100 / 32768f, peaks.get(99), 0.0001);
+        assertEquals(0f, peaks.get(100), 0);
+
+        feed(peaks, pcm, 4096);
+        peaks.finish();
+        assertEquals(400, peaks.getFilled());
+        assertEquals(300 / 32768f, peaks.get(250), 0.0001);
+        assertEquals(400 / 32768f, peaks.get(399), 0.0001);
+    }
+
+    @Test
+    public void resampleAndStorage_keepTheLoudestPeak() throws Exception {
+        WaveformPeaks peaks = new WaveformPeaks(8, 4_000_000);
+        feed(peaks, stereo(0, 32767, 0, 16384), 1000);
+        peaks.finish();
+
+        WaveformPeaks half = peaks.resample(2);
+        assertEquals(2, half.getResolution());
+        assertEquals(1f, half.get(0), 0.001);
+        assertEquals(0.5f, half.get(1), 0.001);
+        assertSame(peaks, peaks.resample(16));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        peaks.write(new DataOutputStream(bytes));
+        // Magic and version, duration, resolution, then a byte per peak
+        assertEquals(8 + 8 + 4 + 8, bytes.size());
+        WaveformPeaks read = WaveformPeaks.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(4_000_000, read.getDurationUs());
+        assertEquals(8, read.getFilled());
+        for (int i = 0; i < 8; i++) {
+            assertEquals(peaks.get(i), read.get(i), 1 / 255f);
+        }
+    }
+}
@@ -24,6 +24,280 @@ export interface PlayerState {
   volume: number;
 }
 
+export interface QueueOptions {
+  tracks: AudioTrack[];
+  /** Index of the track to start from, defaults to 0 */
+  startIndex?: number;
+}
+
+export interface QueueFileOptions {
+  /** Absolute file path, file:// or content:// URI of a JSON array or NDJSON file of tracks */
+  path: string;
+  /** Index of the track to start from, defaults to 0 */
+  startIndex?: number;
+  /** Start playing as soon as the start track has been read, defaults to false */
+  play?: boolean;
+}
+
+export interface QueueFileResult {
+  /** Tracks added to the queue */
+  loaded: number;
+  /** Entries without a url, or that were not track objects */
+  skipped: number;
+}
+
+export interface QueueLoadProgress {
+  loaded: number;
+  /** Not set on the final event */
+  bytesRead?: number;
+  /** -1 when the size is unknown, not set on the final event */
+  totalBytes?: number;
+  /** Final event, carries skipped as well */
+  done: boolean;
+  skipped?: number;
+}
+
+export interface QueueResult {
+  tracks: AudioTrack[];
+  currentIndex: number;
+}
+
+export interface RestoredSession {
+  /** The track prepared, paused at position */
+  track: AudioTrack;
+  /** Seconds */
+  position: number;
+  repeatMode: 'none' | 'one' | 'all';
+  shuffle: boolean;
+}
+
+export interface PrefetchOptions {
+  /** Defaults to true */
+  enabled?: boolean;
+  /** How many upcoming tracks to warm, defaults to 2 */
+  tracks?: number;
+  /** Seconds of audio to warm per track, defaults to 10 */
+  seconds?: number;
+  /** Total bytes a prefetch round may use, defaults to 4 MB */
+  maxBytes?: number;
+}
+
+export interface CacheOptions {
+  /** Keep streamed audio on disk for replays, defaults to true */
+  enabled?: boolean;
+  /** Size cap for the cache, least recently used entries are evicted first. Defaults to 256 MB */
+  maxBytes?: number;
+}
+
+export interface CacheInfo {
+  enabled: boolean;
+  maxBytes: number;
+  usedBytes: number;
+  entries: number;
+}
+
+export interface DownloadOptions {
+  tracks: AudioTrack[];
+  /** Pinned downloads are never evicted to stay within the quota, defaults to false */
+  pinned?: boolean;
+}
+
+export interface NetworkOptions {
+  /** Seconds, defaults to 10 or the connectTimeout plugin config */
+  connectTimeout?: number;
+  /** Seconds without data before a request fails, defaults to 15 or the readTimeout plugin config */
+  readTimeout?: number;
+  /** Replaces the headers for host, an empty object clears them */
+  headers?: { [name: string]: string };
+  /** Host the headers go to, e.g. 'cdn.example.com'. Every host when omitted */
+  host?: string;
+}
+
+export interface DownloadConfig {
+  /** Downloads running at once, defaults to 2 */
+  maxParallel?: number;
+  /** Storage for completed downloads, least recently played unpinned ones are evicted first. Defaults to 1 GB */
+  quotaBytes?: number;
+}
+
+export interface DownloadInfo {
+  trackId: string;
+  state: 'queued' | 'downloading' | 'complete';
+  bytesDownloaded: number;
+  /** -1 while unknown */
+  totalBytes: number;
+  pinned: boolean;
+}
+
+export interface DownloadList {
+  downloads: DownloadInfo[];
+  usedBytes: number;
+  quotaBytes: number;
+}
+
+export interface DownloadProgress {
+  trackId: string;
+  state: 'downloading' | 'complete' | 'error' | 'evicted';
+  bytesDownloaded?: number;
+  /** Not set while unknown */
+  totalBytes?: number;
+  error?: string;
+}
+
+export interface WaveformOptions {
+  track: AudioTrack;
+  /** Number of peaks across the whole track, defaults to 512, at most 8192 */
+  resolution?: number;
+}
+
+export interface WaveformResult {
+  trackId: string;
+  /** Seconds */
+  duration: number;
+  /** Largest absolute amplitude in each equal slice of the track, 0 to 1 */
+  peaks: number[];
+}
+
+export interface WaveformProgress {
+  trackId: string;
+  resolution: number;
+  /** Index of the first peak in peaks */
+  from: number;
+  /** Peaks from..from + peaks.length - 1, final */
+  peaks: number[];
+  done: boolean;
+}
+
+/**
+ * Named buffering profiles (Android). The memory ceiling is the most media held in memory at once.
+ * - 'default': ExoPlayer's defaults, 50 s ahead, starts after 2.5 s. 13 MB ceiling.
+ * - 'fastStart': starts after 0.5 s, for short clips. 15-30 s ahead, 4 MB ceiling.
+ * - 'lowMemory': for low-end devices. 10-20 s ahead, 2 MB ceiling.
+ * - 'flakyNetwork': 1-3 min ahead and waits 10 s after a stall. 16 MB ceiling.
+ */
+export type BufferProfileName = 'default' | 'fastStart' | 'lowMemory' | 'flakyNetwork';
+
+export interface BufferThresholds {
+  /** Keep loading until at least this much is buffered */
+  minBufferMs?: number;
+  /** Stop loading once this much is buffered */
+  maxBufferMs?: number;
+  /** Buffered audio needed to start playback */
+  bufferForPlaybackMs?: number;
+  /** Buffered audio needed to resume after a stall */
+  bufferForPlaybackAfterRebufferMs?: number;
+  /** Memory ceiling, loading stops at this many bytes even below minBufferMs */
+  targetBufferBytes?: number;
+}
+
+export interface BufferOptions {
+  /** Defaults to the current profile, initially 'default' or the bufferProfile plugin config */
+  bufferProfile?: BufferProfileName;
+  /** Overrides on top of the profile */
+  buffer?: BufferThresholds;
+}
+
+/**
+ * What the plugin freed when Android reported memory pressure (Android only).
+ * - 'dropCaches': in-memory artwork and resolved urls.
+ * - 'shrinkBuffers': the 'lowMemory' profile until the app is back in front.
+ * - 'releasePlayer': the paused player. Queue and position are kept and restored on the next command.
+ */
+export type MemoryPressureAction = 'dropCaches' | 'shrinkBuffers' | 'releasePlayer';
+
+export interface MemoryPressureEvent {
+  /** ComponentCallbacks2 trim level, 80 for onLowMemory */
+  level: number;
+  actions: MemoryPressureAction[];
+}
+
+export interface PositionUpdateOptions {
+  /**
+   * 'interval' sends playerStateChange every 500 ms while playing.
+   * 'anchor' only sends positionAnchor on play, pause, seek, rate change,
+   * track change and buffering, and JS extrapolates in between (see PositionClock).
+   */
+  mode: 'interval' | 'anchor';
+  /** Seconds between heartbeat anchors while playing, defaults to 15. Drift past 250 ms is checked every 2 s and corrected sooner */
+  heartbeatInterval?: number;
+}
+
+export interface PositionAnchor {
+  trackId: string;
+  /** Seconds */
+  position: number;
+  /** Seconds, 0 when not known yet */
+  duration: number;
+  playbackRate: number;
+  isPlaying: boolean;
+  /** Native monotonic clock in ms, only meaningful to compare two anchors */
+  timestamp: number;
+  reason: 'play' | 'pause' | 'seek' | 'rate' | 'trackChange' | 'buffering' | 'ready' | 'heartbeat' | 'drift' | 'sync';
+}
+
+export interface MetricsHistogram {
+  count: number;
+  meanMs: number;
+  /** Percentiles are bucket upper bounds, so they are upper estimates */
+  p50Ms: number;
+  p95Ms: number;
+  maxMs: number;
+  /** Upper bound of each bucket, the last count is everything above the last bound */
+  boundsMs: number[];
+  counts: number[];
+}
+
+export interface PlaybackMetrics {
+  current: {
+    trackId?: string;
+    /** -1 until reached */
+    timeToReadyMs: number;
+    timeToFirstAudioMs: number;
+    rebufferCount: number;
+    rebufferMs: number;
+    bytesLoaded: number;
+  };
+  totals: {
+    tracks: number;
+    rebuffers: number;
+    bytesLoaded: number;
+    bridgeEvents: number;
+    /** Events sent while JS had no listener registered */
+    droppedBridgeEvents: number;
+    /** Position ticks that ran more than 50 ms late */
+    lateTicks: number;
+    /** Anchors sent because the extrapolated position drifted past 250 ms */
+    driftAnchors: number;
+    /** Players released while idle or under memory pressure */
+    playerReleases: number;
+    /** New HTTP connections, reused ones are not counted */
+    connectionsOpened: number;
+  };
+  histograms: {
+    timeToReady: MetricsHistogram;
+    timeToFirstAudio: MetricsHistogram;
+    rebufferDuration: MetricsHistogram;
+    tickLateness: MetricsHistogram;
+    /** From rebuilding a released player to READY at the saved position */
+    resumeLatency: MetricsHistogram;
+    /** From sending an HTTP request to its response headers, audio, downloads and artwork alike */
+    timeToFirstByte: MetricsHistogram;
+  };
+}
+
+/**
+ * One operation for execute(), named and shaped like the method it stands for.
+ */
+export type PlayerCommand =
+  | { type: 'prepare'; track: AudioTrack }
+  | { type: 'setQueue'; tracks: AudioTrack[]; startIndex?: number }
+  | { type: 'play' | 'pause' | 'stop' | 'next' | 'previous' }
+  | { type: 'seekTo'; position: number }
+  | { type: 'setPlaybackRate'; rate: number }
+  | { type: 'setVolume'; volume: number }
+  | { type: 'setRepeatMode'; mode: 'none' | 'one' | 'all' }
+  | { type: 'setShuffleMode'; enabled: boolean; seed?: number };
+
 export interface PlaybackOptions {
   loop?: boolean;
   volume?: number;
@@ -32,9 +306,29 @@ export interface PlaybackOptions {
 
 export interface AudioPlayerPlugin {
   /**
-   * Initialize the audio player
+   * Initialize the audio player. On Android this also sets the buffering profile.
+   * The native player is otherwise built on the first playback command, not at app start.
    */
-  initialize(): Promise<void>;
+  initialize(options?: BufferOptions): Promise<void>;
+
+  /**
+   * Build the native player and its renderers in the background ahead of the first play (Android only).
+   * Resolves once the player is ready.
+   */
+  warmUp(): Promise<void>;
+
+  /**
+   * Switch the buffering profile, e.g. between tracks (Android only).
+   * Applies from the player's next buffering decision.
+   */
+  setBufferProfile(options: BufferOptions): Promise<void>;
+
+  /**
+   * Release the player after it has been paused or stopped this long, 0 turns it off (Android only).
+   * Queue and position are kept, the next command restores them. warmUp() restores ahead of play.
+   * Defaults to the idleTimeout plugin config, otherwise 0.
+   */
+  setIdleTimeout(options: { seconds: number }): Promise<void>;
 
   /**
    * Prepare a track for playback
@@ -67,24 +361,47 @@ export interface AudioPlayerPlugin {
   next(): Promise<void>;
 
   /**
-   * Seek to a specific position in the current track
+   * Seek to a specific position in the current track.
+   * On Android rapid seeks are coalesced, only the latest pending target is applied.
+   * Pass `scrubbing: true` while a seekbar is dragged for fast, approximate seeks
+   * without position events, then a final seek without it for the exact position.
    */
-  seekTo(position: number | { position: number }): Promise<void>;
+  seekTo(position: number | { position: number; scrubbing?: boolean }): Promise<void>;
 
   /**
-   * Set the playback queue
+   * Apply several commands in one bridge call, in order. On Android they run together on the
+   * player thread: all are checked first, so an invalid one rejects with nothing applied, and
+   * a single trackChange and playerStateChange (or positionAnchor) report the end state.
    */
-  setQueue(tracks: AudioTrack[]): Promise<void>;
+  execute(options: { commands: PlayerCommand[] }): Promise<{ applied: number }>;
 
   /**
-   * Add tracks to the current queue
+   * Set the playback queue. On Android the whole queue is played natively,
+   * advancing between tracks without a round trip through JS.
    */
-  addTracks(tracks: AudioTrack[]): Promise<void>;
+  setQueue(options: QueueOptions): Promise<void>;
+
+  /**
+   * Replace the queue with tracks read natively from a file, without sending them over the bridge (Android only).
+   * The queue is playable as soon as the start track has been read, queueLoadProgress events report the rest.
+   * Resolves once the whole file has been read.
+   */
+  loadQueueFromFile(options: QueueFileOptions): Promise<QueueFileResult>;
+
+  /**
+   * Add tracks to the end of the current queue
+   */
+  addTracks(options: { tracks: AudioTrack[] }): Promise<void>;
 
   /**
    * Remove a track from the queue by ID
    */
-  removeTrack(trackId: string): Promise<void>;
+  removeTrack(options: { trackId: string }): Promise<void>;
+
+  /**
+   * Jump straight to a queued track by ID
+   */
+  skipTo(options: { trackId: string }): Promise<void>;
 
   /**
    * Clear the entire queue
@@ -94,7 +411,84 @@ export interface AudioPlayerPlugin {
   /**
    * Get the current playback queue
    */
-  getQueue(): Promise<AudioTrack[]>;
+  getQueue(): Promise<QueueResult>;
+
+  /**
+   * Prepare the session saved before the app was last closed, paused where it was left (Android only).
+   * Needs the persistSession plugin config. Resolves as soon as the saved track is prepared,
+   * the rest of the queue follows and a final queueLoadProgress event reports it.
+   */
+  restoreSession(): Promise<RestoredSession>;
+
+  /**
+   * Configure how upcoming queue items are prefetched (Android only)
+   */
+  configurePrefetch(options: PrefetchOptions): Promise<void>;
+
+  /**
+   * Enable or resize the on-disk cache for streamed audio (Android only).
+   * The setting is remembered across app launches.
+   */
+  configureCache(options: CacheOptions): Promise<void>;
+
+  /**
+   * Get the size and usage of the audio cache
+   */
+  getCacheInfo(): Promise<CacheInfo>;
+
+  /**
+   * Remove one track from the audio cache, or everything when no trackId is given
+   */
+  clearCache(options?: { trackId?: string }): Promise<void>;
+
+  /**
+   * Set timeouts and request headers for the HTTP client shared by streaming, prefetch,
+   * downloads and artwork (Android only).
+   */
+  configureNetwork(options: NetworkOptions): Promise<void>;
+
+  /**
+   * Download tracks for offline playback (Android only). Only http(s) urls are downloaded.
+   * Interrupted downloads resume where they stopped, and a downloaded track plays from
+   * its local copy. downloadProgress events report each track.
+   */
+  downloadTracks(options: DownloadOptions): Promise<{ queued: number }>;
+
+  /**
+   * Stop a queued or running download, keeping what was fetched for a later resume
+   */
+  cancelDownload(options: { trackId: string }): Promise<void>;
+
+  /**
+   * Delete a download, complete or partial
+   */
+  removeDownload(options: { trackId: string }): Promise<void>;
+
+  /**
+   * Pin or unpin a download. Pinned downloads are kept regardless of the quota.
+   */
+  setDownloadPinned(options: { trackId: string; pinned: boolean }): Promise<void>;
+
+  /**
+   * Set download parallelism and the storage quota (Android only)
+   */
+  configureDownloads(options: DownloadConfig): Promise<void>;
+
+  /**
+   * List queued, running and completed downloads
+   */
+  getDownloads(): Promise<DownloadList>;
+
+  /**
+   * Amplitude peaks of a track for a scrubber (Android only). Decoded natively in the background
+   * and cached per track id, waveformProgress events deliver the peaks as they are decoded.
+   */
+  getWaveform(options: WaveformOptions): Promise<WaveformResult>;
+
+  /**
+   * Stop decoding a waveform, its getWaveform() call rejects
+   */
+  cancelWaveform(options: { trackId: string }): Promise<void>;
 
   /**
    * Get the current player state
@@ -104,12 +498,13 @@ export interface AudioPlayerPlugin {
   /**
    * Set repeat mode
    */
-  setRepeatMode(mode: 'none' | 'one' | 'all'): Promise<void>;
+  setRepeatMode(options: { mode: 'none' | 'one' | 'all' }): Promise<void>;
 
   /**
-   * Set shuffle mode
+   * Set shuffle mode. The same seed over the same queue gives the same order.
+   * Shuffling happens natively, the queue is not re-sent.
    */
-  setShuffleMode(enabled: boolean): Promise<void>;
+  setShuffleMode(options: { enabled: boolean; seed?: number }): Promise<void>;
 
   /**
    * Set volume (0.0 to 1.0)
@@ -121,11 +516,26 @@ export interface AudioPlayerPlugin {
    */
   setPlaybackRate(options: { rate: number }): Promise<void>;
 
+  /**
+   * Switch between the interval position stream and anchor-based updates (Android only)
+   */
+  setPositionUpdateMode(options: PositionUpdateOptions): Promise<void>;
+
+  /**
+   * Read playback quality metrics, optionally resetting them afterwards (Android only)
+   */
+  getMetrics(options?: { reset?: boolean }): Promise<PlaybackMetrics>;
+
+  /**
+   * Reset the totals and histograms returned by getMetrics
+   */
+  resetMetrics(): Promise<void>;
+
   /**
    * Listen for player state changes
    */
   addListener(
-    eventName: 'playerStateChange' | 'trackChange' | 'playbackEnd' | 'error' | 'loading',
+    eventName: 'playerStateChange' | 'trackChange' | 'playbackEnd' | 'error' | 'loading' | 'positionAnchor' | 'queueLoadProgress' | 'downloadProgress' | 'memoryPressure' | 'waveformProgress',
     listenerFunc: (data: any) => void,
   ): Promise<PluginListenerHandle>;
 
@@ -6,4 +6,5 @@ const AudioPlayer = registerPlugin<AudioPlayerPlugin>('AudioPlayer', {
 });
 
 export * from './definitions';
+export * from './position';
 export { AudioPlayer };
\ No newline at end of file
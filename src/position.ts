@@ -0,0 +1,32 @@
+import type { PositionAnchor } from './definitions';
+
+/**
+ * Extrapolates the playback position from the last `positionAnchor` event,
+ * so a UI can animate every frame without native sending position ticks.
+ */
+export class PositionClock {
+  private anchor?: PositionAnchor;
+  private receivedAt = 0;
+
+  update(anchor: PositionAnchor): void {
+    this.anchor = anchor;
+    this.receivedAt = performance.now();
+  }
+
+  /**
+   * Current position in seconds, clamped to the track duration when known
+   */
+  getPosition(now: number = performance.now()): number {
+    if (!this.anchor) return 0;
+
+    const { position, duration, isPlaying, playbackRate } = this.anchor;
+    if (!isPlaying) return position;
+
+    const extrapolated = position + ((now - this.receivedAt) / 1000) * playbackRate;
+    return duration > 0 ? Math.min(extrapolated, duration) : extrapolated;
+  }
+
+  get trackId(): string | undefined {
+    return this.anchor?.trackId;
+  }
+}
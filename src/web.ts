@@ -1,5 +1,27 @@
 import { WebPlugin } from '@capacitor/core';
-import type { AudioPlayerPlugin, AudioTrack, PlayerState } from './definitions';
+import type {
+  AudioPlayerPlugin,
+  AudioTrack,
+  BufferOptions,
+  CacheInfo,
+  CacheOptions,
+  DownloadConfig,
+  DownloadList,
+  DownloadOptions,
+  NetworkOptions,
+  PlaybackMetrics,
+  PlayerCommand,
+  PlayerState,
+  PositionUpdateOptions,
+  PrefetchOptions,
+  QueueFileOptions,
+  QueueFileResult,
+  QueueOptions,
+  QueueResult,
+  RestoredSession,
+  WaveformOptions,
+  WaveformResult,
+} from './definitions';
 
 export class AudioPlayerWeb implements AudioPlayerPlugin {
   private state: PlayerState = {
@@ -15,8 +37,20 @@ export class AudioPlayerWeb implements AudioPlayerPlugin {
     volume: 1.0,
   };
 
-  async initialize(): Promise<void> {
-    console.log('Web AudioPlayer initialized');
+  async initialize(options?: BufferOptions): Promise<void> {
+    console.log('Web AudioPlayer initialized', options ?? '');
+  }
+
+  async warmUp(): Promise<void> {
+    console.log('Web AudioPlayer warmUp');
+  }
+
+  async setBufferProfile(options: BufferOptions): Promise<void> {
+    console.log('Web AudioPlayer setBufferProfile:', options.bufferProfile);
+  }
+
+  async setIdleTimeout(options: { seconds: number }): Promise<void> {
+    console.log('Web AudioPlayer setIdleTimeout:', options.seconds);
   }
 
   // 🎯 FIXED: Updated signature
@@ -64,25 +98,132 @@ export class AudioPlayerWeb implements AudioPlayerPlugin {
     this.state.position = position;
   }
 
-  async setQueue(tracks: AudioTrack[]): Promise<void> {
-    console.log('Web AudioPlayer setQueue:', tracks.length);
+  async execute(options: { commands: PlayerCommand[] }): Promise<{ applied: number }> {
+    console.log('Web AudioPlayer execute:', options.commands.length);
+    for (const command of options.commands) {
+      switch (command.type) {
+        case 'prepare':
+          await this.prepare(command.track);
+          break;
+        case 'setQueue':
+          await this.setQueue(command);
+          break;
+        case 'play':
+        case 'pause':
+        case 'stop':
+        case 'next':
+        case 'previous':
+          await this[command.type]();
+          break;
+        case 'seekTo':
+          await this.seekTo(command.position);
+          break;
+        case 'setPlaybackRate':
+          await this.setPlaybackRate(command.rate);
+          break;
+        case 'setVolume':
+          await this.setVolume(command.volume);
+          break;
+        case 'setRepeatMode':
+          await this.setRepeatMode(command);
+          break;
+        case 'setShuffleMode':
+          await this.setShuffleMode(command);
+          break;
+      }
+    }
+    return { applied: options.commands.length };
+  }
+
+  async setQueue(options: QueueOptions): Promise<void> {
+    console.log('Web AudioPlayer setQueue:', options.tracks.length);
+  }
+
+  async addTracks(options: { tracks: AudioTrack[] }): Promise<void> {
+    console.log('Web AudioPlayer addTracks:', options.tracks.length);
   }
 
-  async addTracks(tracks: AudioTrack[]): Promise<void> {
-    console.log('Web AudioPlayer addTracks:', tracks.length);
+  async removeTrack(options: { trackId: string }): Promise<void> {
+    console.log('Web AudioPlayer removeTrack:', options.trackId);
   }
 
-  async removeTrack(trackId: string): Promise<void> {
-    console.log('Web AudioPlayer removeTrack:', trackId);
+  async loadQueueFromFile(options: QueueFileOptions): Promise<QueueFileResult> {
+    console.log('Web AudioPlayer loadQueueFromFile:', options.path);
+    throw new Error('loadQueueFromFile is only available on Android');
+  }
+
+  async skipTo(options: { trackId: string }): Promise<void> {
+    console.log('Web AudioPlayer skipTo:', options.trackId);
   }
 
   async clearQueue(): Promise<void> {
     console.log('Web AudioPlayer clearQueue');
   }
 
-  async getQueue(): Promise<AudioTrack[]> {
+  async getQueue(): Promise<QueueResult> {
     console.log('Web AudioPlayer getQueue');
-    return [];
+    return { tracks: [], currentIndex: 0 };
+  }
+
+  async restoreSession(): Promise<RestoredSession> {
+    console.log('Web AudioPlayer restoreSession');
+    throw new Error('restoreSession is only available on Android');
+  }
+
+  async configurePrefetch(options: PrefetchOptions): Promise<void> {
+    console.log('Web AudioPlayer configurePrefetch:', options);
+  }
+
+  async configureCache(options: CacheOptions): Promise<void> {
+    console.log('Web AudioPlayer configureCache:', options);
+  }
+
+  async getCacheInfo(): Promise<CacheInfo> {
+    console.log('Web AudioPlayer getCacheInfo');
+    return { enabled: false, maxBytes: 0, usedBytes: 0, entries: 0 };
+  }
+
+  async clearCache(options?: { trackId?: string }): Promise<void> {
+    console.log('Web AudioPlayer clearCache:', options?.trackId);
+  }
+
+  async configureNetwork(options: NetworkOptions): Promise<void> {
+    console.log('Web AudioPlayer configureNetwork:', options);
+  }
+
+  async downloadTracks(options: DownloadOptions): Promise<{ queued: number }> {
+    console.log('Web AudioPlayer downloadTracks:', options.tracks.length);
+    throw new Error('downloadTracks is only available on Android');
+  }
+
+  async cancelDownload(options: { trackId: string }): Promise<void> {
+    console.log('Web AudioPlayer cancelDownload:', options.trackId);
+  }
+
+  async removeDownload(options: { trackId: string }): Promise<void> {
+    console.log('Web AudioPlayer removeDownload:', options.trackId);
+  }
+
+  async setDownloadPinned(options: { trackId: string; pinned: boolean }): Promise<void> {
+    console.log('Web AudioPlayer setDownloadPinned:', options);
+  }
+
+  async configureDownloads(options: DownloadConfig): Promise<void> {
+    console.log('Web AudioPlayer configureDownloads:', options);
+  }
+
+  async getDownloads(): Promise<DownloadList> {
+    console.log('Web AudioPlayer getDownloads');
+    return { downloads: [], usedBytes: 0, quotaBytes: 0 };
+  }
+
+  async getWaveform(options: WaveformOptions): Promise<WaveformResult> {
+    console.log('Web AudioPlayer getWaveform:', options.track.id);
+    throw new Error('getWaveform is only available on Android');
+  }
+
+  async cancelWaveform(options: { trackId: string }): Promise<void> {
+    console.log('Web AudioPlayer cancelWaveform:', options.trackId);
   }
 
   async getPlayerState(): Promise<PlayerState> {
@@ -90,14 +231,14 @@ export class AudioPlayerWeb implements AudioPlayerPlugin {
     return this.state;
   }
 
-  async setRepeatMode(mode: 'none' | 'one' | 'all'): Promise<void> {
-    console.log('Web AudioPlayer setRepeatMode:', mode);
-    this.state.repeatMode = mode;
+  async setRepeatMode(options: { mode: 'none' | 'one' | 'all' }): Promise<void> {
+    console.log('Web AudioPlayer setRepeatMode:', options.mode);
+    this.state.repeatMode = options.mode;
   }
 
-  async setShuffleMode(enabled: boolean): Promise<void> {
-    console.log('Web AudioPlayer setShuffleMode:', enabled);
-    this.state.shuffleMode = enabled;
+  async setShuffleMode(options: { enabled: boolean; seed?: number }): Promise<void> {
+    console.log('Web AudioPlayer setShuffleMode:', options.enabled);
+    this.state.shuffleMode = options.enabled;
   }
 
   async setVolume(volume: number): Promise<void> {
@@ -121,6 +262,19 @@ export class AudioPlayerWeb implements AudioPlayerPlugin {
     this.state.playbackRate = rate;
   }
 
+  async setPositionUpdateMode(options: PositionUpdateOptions): Promise<void> {
+    console.log('Web AudioPlayer setPositionUpdateMode:', options.mode);
+  }
+
+  async getMetrics(options?: { reset?: boolean }): Promise<PlaybackMetrics> {
+    console.log('Web AudioPlayer getMetrics:', options);
+    throw new Error('getMetrics is only available on Android');
+  }
+
+  async resetMetrics(): Promise<void> {
+    console.log('Web AudioPlayer resetMetrics');
+  }
+
   async addListener(
     eventName: string,
     listenerFunc: (data: any) => void,